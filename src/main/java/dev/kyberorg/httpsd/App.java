@@ -6,6 +6,8 @@ import lombok.Getter;
 import org.springframework.core.env.Environment;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
+
 @Component
 public class App {
     public static final Gson GSON = new GsonBuilder().create();
@@ -36,4 +38,24 @@ public class App {
     public String getAppPassword() {
         return env.getProperty("app.auth.password", NO_VALUE);
     }
+
+    public boolean isSnapshotCacheEnabled() {
+        return env.getProperty("app.sd.cache.enabled", Boolean.class, true);
+    }
+
+    public String getSnapshotStoreDir() {
+        return env.getProperty("app.sd.store.dir", "");
+    }
+
+    public boolean isSnapshotWarmStartEnabled() {
+        return env.getProperty("app.sd.store.warm-start", Boolean.class, true);
+    }
+
+    public boolean isSnapshotRebuildOnStartEnabled() {
+        return env.getProperty("app.sd.rebuild.on-start", Boolean.class, true);
+    }
+
+    public Duration getSnapshotRebuildDebounce() {
+        return env.getProperty("app.sd.rebuild.debounce", Duration.class, Duration.ofMillis(250));
+    }
 }
@@ -3,7 +3,9 @@ package dev.kyberorg.httpsd.db.dao;
 import dev.kyberorg.httpsd.db.models.Label;
 import dev.kyberorg.httpsd.db.models.LabelKey;
 import dev.kyberorg.httpsd.db.models.LabelValue;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -31,4 +33,21 @@ public interface LabelDao extends CrudRepository<Label, Long> {
      */
     Optional<Label> findByLabelKeyAndLabelValue(LabelKey labelKey, LabelValue labelValue);
 
+    /**
+     * Provides filenames of all files, which have records with {@link Label} with given id.
+     *
+     * @param labelId non-negative {@link Label}'s id.
+     * @return list of filenames (without extension) or empty {@link List}.
+     */
+    @Query("select distinct r.file.fileName from Record r join r.labels l where l.id = :labelId")
+    List<String> findFileNamesByLabelId(@Param("labelId") long labelId);
+
+    /**
+     * Provides ids of {@link dev.kyberorg.httpsd.db.models.Record}s, that use {@link Label} with given id.
+     *
+     * @param labelId {@link Label}'s id.
+     * @return {@link List} of record ids or empty {@link List}.
+     */
+    @Query("select r.id from Record r join r.labels l where l.id = :labelId")
+    List<Long> findRecordIdsByLabelId(@Param("labelId") long labelId);
 }
\ No newline at end of file
@@ -2,16 +2,30 @@ package dev.kyberorg.httpsd.db.dao;
 
 import dev.kyberorg.httpsd.db.models.File;
 import dev.kyberorg.httpsd.db.models.Record;
+import dev.kyberorg.httpsd.db.projections.RecordLabelRow;
+import dev.kyberorg.httpsd.db.projections.RecordNameRow;
+import dev.kyberorg.httpsd.db.projections.RecordTargetRow;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * DAO for {@link Record} table.
+ * Paged and filtered queries are made with {@link JpaSpecificationExecutor}
+ * and {@link dev.kyberorg.httpsd.db.specifications.RecordSpecifications}.
  */
 @Repository
-public interface RecordDao extends CrudRepository<Record, Long> {
+public interface RecordDao extends CrudRepository<Record, Long>, JpaSpecificationExecutor<Record> {
     /**
      * Defines if {@link Record} with given name exists or not.
      *
@@ -27,4 +41,94 @@ public interface RecordDao extends CrudRepository<Record, Long> {
      */
     List<Record> findByFile_FileName(String fileName);
 
+    /**
+     * Provides {@link Record}s with given ids. Their targets and labels are fetched by same query.
+     *
+     * @param ids ids of {@link Record}s.
+     * @return {@link List} with found {@link Record}s. Every {@link Record} is listed once.
+     */
+    @Query("select distinct r from Record r left join fetch r.file "
+            + "left join fetch r.targets left join fetch r.labels where r.id in :ids")
+    List<Record> findWithTargetsAndLabelsByIdIn(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Streams targets of {@link Record.Status#ACTIVE} {@link Record}s bounded to {@link File} with given filename.
+     * Record without targets produces one row with {@code null} target.
+     * Rows are fetched from database in batches, while stream is consumed.
+     * Should be called within transaction and returned {@link Stream} must be closed after use.
+     *
+     * @param fileName non-empty string with filename (without extension).
+     * @return {@link Stream} of {@link RecordTargetRow}s ordered by record id.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("select new dev.kyberorg.httpsd.db.projections.RecordTargetRow(r.id, t.value) "
+            + "from Record r left join r.targets t "
+            + "where r.file.fileName = :fileName and r.active = true order by r.id, t.id")
+    Stream<RecordTargetRow> streamActiveTargetRows(@Param("fileName") String fileName);
+
+    /**
+     * Streams labels of {@link Record.Status#ACTIVE} {@link Record}s bounded to {@link File} with given filename.
+     * Rows are fetched from database in batches, while stream is consumed.
+     * Should be called within transaction and returned {@link Stream} must be closed after use.
+     *
+     * @param fileName non-empty string with filename (without extension).
+     * @return {@link Stream} of {@link RecordLabelRow}s ordered by record id.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("select new dev.kyberorg.httpsd.db.projections.RecordLabelRow(r.id, l.labelKey.value, l.labelValue.value) "
+            + "from Record r join r.labels l "
+            + "where r.file.fileName = :fileName and r.active = true order by r.id, l.id")
+    Stream<RecordLabelRow> streamActiveLabelRows(@Param("fileName") String fileName);
+
+    /**
+     * Streams names of all {@link Record}s and their {@link File}s.
+     * Should be called within transaction and returned {@link Stream} must be closed after use.
+     *
+     * @return {@link Stream} of {@link RecordNameRow}s.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("select new dev.kyberorg.httpsd.db.projections.RecordNameRow(r.id, r.name, f.fileName) "
+            + "from Record r left join r.file f")
+    Stream<RecordNameRow> streamNameRows();
+
+    /**
+     * Streams targets of all {@link Record}s. Records without targets produce no rows.
+     * Should be called within transaction and returned {@link Stream} must be closed after use.
+     *
+     * @return {@link Stream} of {@link RecordTargetRow}s.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("select new dev.kyberorg.httpsd.db.projections.RecordTargetRow(r.id, t.value) "
+            + "from Record r join r.targets t")
+    Stream<RecordTargetRow> streamTargetRows();
+
+    /**
+     * Streams labels of all {@link Record}s.
+     * Should be called within transaction and returned {@link Stream} must be closed after use.
+     *
+     * @return {@link Stream} of {@link RecordLabelRow}s.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("select new dev.kyberorg.httpsd.db.projections.RecordLabelRow(r.id, l.labelKey.value, l.labelValue.value) "
+            + "from Record r join r.labels l")
+    Stream<RecordLabelRow> streamLabelRows();
+
+    /**
+     * Provides filename of {@link File}, that {@link Record} with given id bounded to.
+     *
+     * @param id non-negative {@link Record}'s id.
+     * @return {@link Optional} with found filename or {@link Optional#empty()}
+     * if {@link Record} not found or not bound to any {@link File}.
+     */
+    @Query("select r.file.fileName from Record r where r.id = :id")
+    Optional<String> findFileNameById(@Param("id") long id);
+
+    /**
+     * Provides activity flag of {@link Record} with given id without loading whole entity.
+     *
+     * @param id {@link Record}'s id.
+     * @return {@link Optional} with {@link Record}'s activity flag or {@link Optional#empty()}, if no such record.
+     */
+    @Query("select r.active from Record r where r.id = :id")
+    Optional<Boolean> findActiveById(@Param("id") long id);
 }
\ No newline at end of file
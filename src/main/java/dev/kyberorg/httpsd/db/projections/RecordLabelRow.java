@@ -0,0 +1,15 @@
+package dev.kyberorg.httpsd.db.projections;
+
+import dev.kyberorg.httpsd.db.models.Label;
+import dev.kyberorg.httpsd.db.models.Record;
+import lombok.Value;
+
+/**
+ * Lightweight read-only row: {@link Record}'s id and key and value of one of its {@link Label}s.
+ */
+@Value
+public class RecordLabelRow {
+    Long recordId;
+    String key;
+    String value;
+}
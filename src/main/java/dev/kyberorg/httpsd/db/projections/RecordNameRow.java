@@ -0,0 +1,18 @@
+package dev.kyberorg.httpsd.db.projections;
+
+import dev.kyberorg.httpsd.db.models.File;
+import dev.kyberorg.httpsd.db.models.Record;
+import lombok.Value;
+
+/**
+ * Lightweight read-only row: {@link Record}'s id, name and name of its {@link File}.
+ */
+@Value
+public class RecordNameRow {
+    Long recordId;
+    String name;
+    /**
+     * Filename or {@code null}, if {@link Record} is not bound to any {@link File}.
+     */
+    String fileName;
+}
@@ -0,0 +1,17 @@
+package dev.kyberorg.httpsd.db.projections;
+
+import dev.kyberorg.httpsd.db.models.Record;
+import dev.kyberorg.httpsd.db.models.Target;
+import lombok.Value;
+
+/**
+ * Lightweight read-only row: {@link Record}'s id and value of one of its {@link Target}s.
+ */
+@Value
+public class RecordTargetRow {
+    Long recordId;
+    /**
+     * {@link Target} value or {@code null}, if {@link Record} has no targets.
+     */
+    String target;
+}
@@ -0,0 +1,58 @@
+package dev.kyberorg.httpsd.db.specifications;
+
+import dev.kyberorg.httpsd.db.models.Record;
+import jakarta.persistence.criteria.Predicate;
+import org.apache.commons.collections4.ListUtils;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * {@link Specification}s to filter {@link Record}s in database.
+ */
+public final class RecordSpecifications {
+    /**
+     * Max amount of ids in single {@literal IN} list.
+     */
+    private static final int MAX_IN_LIST = 1000;
+
+    private RecordSpecifications() {
+        throw new UnsupportedOperationException("Utility class");
+    }
+
+    /**
+     * Selects {@link Record}s with given ids. Long {@link Collection} is split into several {@literal IN} lists
+     * of at most {@link #MAX_IN_LIST} ids, so limits of databases on length of single list are not hit.
+     *
+     * @param ids ids of {@link Record}s. Empty {@link Collection} selects nothing.
+     * @return {@link Specification} with filter.
+     */
+    public static Specification<Record> idIn(final Collection<Long> ids) {
+        List<List<Long>> chunks = ListUtils.partition(new ArrayList<>(ids), MAX_IN_LIST);
+        return (root, query, cb) -> cb.or(chunks.stream()
+                .map(chunk -> root.get("id").in(chunk))
+                .toArray(Predicate[]::new));
+    }
+
+    /**
+     * Selects {@link Record}s, which {@link Record.Status} name contains given text (case-insensitive).
+     *
+     * @param filterText text to search for.
+     * @return {@link Specification} with filter. It selects nothing, if no {@link Record.Status} matches.
+     */
+    public static Specification<Record> statusContains(final String filterText) {
+        String text = filterText.trim().toLowerCase(Locale.ENGLISH);
+        return (root, query, cb) -> {
+            List<Predicate> predicates = new ArrayList<>();
+            for (Record.Status status : Record.Status.values()) {
+                if (status.name().toLowerCase(Locale.ENGLISH).contains(text)) {
+                    predicates.add(cb.equal(root.get("active"), status.isActiveRecord()));
+                }
+            }
+            return cb.or(predicates.toArray(new Predicate[0]));
+        };
+    }
+}
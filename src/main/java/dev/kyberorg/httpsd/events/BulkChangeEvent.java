@@ -0,0 +1,19 @@
+package dev.kyberorg.httpsd.events;
+
+import dev.kyberorg.httpsd.db.models.File;
+import lombok.Value;
+
+import java.util.Set;
+
+/**
+ * Published by services, when content of many {@link File}s changed at once (e.g. label, that many records use,
+ * was renamed). Such {@link File}s are reloaded and re-rendered together and in parallel,
+ * instead of going one by one through {@link FileChangeScheduler}.
+ */
+@Value
+public class BulkChangeEvent {
+    /**
+     * Filenames (without extension) of changed {@link File}s.
+     */
+    Set<String> fileNames;
+}
@@ -0,0 +1,100 @@
+package dev.kyberorg.httpsd.events;
+
+import dev.kyberorg.httpsd.App;
+import dev.kyberorg.httpsd.db.models.File;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Coalesces {@link FileChangedEvent}s: first change of {@link File} starts debounce window
+ * ({@literal app.sd.rebuild.debounce}), all changes within it are merged to single {@link FileRebuildEvent}
+ * published when window ends. So burst of hundreds of record updates costs one rebuild per file.
+ * <p>
+ * Rebuilds run on small pool. Rebuilds of same {@link File} are serialized with striped locks, so listeners
+ * see them in order. Listeners lock only rebuilt {@link File} too (registry reads database under per-file lock),
+ * so different {@link File}s are rebuilt concurrently. With zero window events are passed through at once.
+ */
+@Slf4j
+@Component
+public class FileChangeScheduler {
+    private static final int STRIPES = 64;
+    private static final int REBUILD_THREADS = 4;
+
+    private final ApplicationEventPublisher eventPublisher;
+    private final Duration debounce;
+    private final Map<String, ScheduledFuture<?>> pending = new ConcurrentHashMap<>();
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+    private final ScheduledExecutorService executor;
+
+    /**
+     * Creates {@link FileChangeScheduler}. Should be called by Spring itself, not intended to use directly.
+     *
+     * @param app {@link App} with configured debounce window.
+     * @param eventPublisher publisher for {@link FileRebuildEvent}s.
+     */
+    public FileChangeScheduler(final App app, final ApplicationEventPublisher eventPublisher) {
+        this.eventPublisher = eventPublisher;
+        this.debounce = app.getSnapshotRebuildDebounce();
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("file-rebuild-");
+        threadFactory.setDaemon(true);
+        this.executor = Executors.newScheduledThreadPool(REBUILD_THREADS, threadFactory);
+    }
+
+    /**
+     * Marks {@link File} dirty and schedules its rebuild at the end of debounce window,
+     * unless rebuild is already scheduled.
+     *
+     * @param event {@link FileChangedEvent} with changed {@link File}.
+     */
+    @EventListener
+    public void onFileChanged(final FileChangedEvent event) {
+        String fileName = event.getFileName();
+        if (debounce.isZero() || debounce.isNegative()) {
+            rebuild(fileName);
+            return;
+        }
+        pending.computeIfAbsent(fileName,
+                name -> executor.schedule(() -> flush(name), debounce.toMillis(), TimeUnit.MILLISECONDS));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void flush(final String fileName) {
+        //changes made from now on schedule next rebuild
+        pending.remove(fileName);
+        try {
+            rebuild(fileName);
+        } catch (RuntimeException e) {
+            log.warn("Failed to rebuild {}.json: {}", fileName, e.getMessage());
+        }
+    }
+
+    private void rebuild(final String fileName) {
+        ReentrantLock lock = stripes[Math.floorMod(fileName.hashCode(), STRIPES)];
+        lock.lock();
+        try {
+            eventPublisher.publishEvent(new FileRebuildEvent(fileName, false));
+        } finally {
+            lock.unlock();
+        }
+    }
+}
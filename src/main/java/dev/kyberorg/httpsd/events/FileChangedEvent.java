@@ -0,0 +1,17 @@
+package dev.kyberorg.httpsd.events;
+
+import dev.kyberorg.httpsd.db.models.File;
+import dev.kyberorg.httpsd.db.models.Record;
+import lombok.Value;
+
+/**
+ * Published by services, when content of {@link File} (its {@link Record}s, their targets or labels) changed
+ * and JSON, generated for this {@link File}, is no longer actual.
+ */
+@Value
+public class FileChangedEvent {
+    /**
+     * Filename (without extension) of changed {@link File}.
+     */
+    String fileName;
+}
@@ -0,0 +1,22 @@
+package dev.kyberorg.httpsd.events;
+
+import dev.kyberorg.httpsd.db.models.File;
+import lombok.Value;
+
+/**
+ * Published by {@link FileChangeScheduler}, when {@link File} should be re-read and its JSON re-rendered.
+ * Unlike {@link FileChangedEvent} it comes at most once per debounce window,
+ * no matter how many changes were made to {@link File} within it.
+ */
+@Value
+public class FileRebuildEvent {
+    /**
+     * Filename (without extension) of changed {@link File}.
+     */
+    String fileName;
+    /**
+     * True if registry already has new content of {@link File} (it was loaded together with other {@link File}s
+     * after {@link BulkChangeEvent}), false if content should be loaded.
+     */
+    boolean registryUpdated;
+}
@@ -0,0 +1,16 @@
+package dev.kyberorg.httpsd.events;
+
+import dev.kyberorg.httpsd.db.models.Label;
+import dev.kyberorg.httpsd.db.models.Record;
+import lombok.Value;
+
+/**
+ * Published, when existing {@link Label} is modified. All {@link Record}s with this {@link Label} are changed.
+ */
+@Value
+public class LabelChangedEvent {
+    /**
+     * Id of modified {@link Label}.
+     */
+    long labelId;
+}
@@ -0,0 +1,33 @@
+package dev.kyberorg.httpsd.events;
+
+import dev.kyberorg.httpsd.db.models.File;
+import dev.kyberorg.httpsd.db.models.Record;
+import lombok.Value;
+
+/**
+ * Published by {@link dev.kyberorg.httpsd.services.RecordService}, when {@link Record} was saved or deleted.
+ * Unlike {@link FileChangedEvent} it tells, what exactly happened, so it can be passed to external consumers.
+ */
+@Value
+public class RecordChangedEvent {
+    /**
+     * Filename (without extension) of {@link File}, {@link Record} is (or was) bound to,
+     * or {@code null}, if {@link Record} has no {@link File}.
+     */
+    String fileName;
+    /**
+     * Id of changed {@link Record}.
+     */
+    long recordId;
+    /**
+     * What happened with {@link Record}.
+     */
+    Action action;
+
+    /**
+     * Kind of {@link Record} change.
+     */
+    public enum Action {
+        CREATED, UPDATED, DISABLED, DELETED
+    }
+}
@@ -2,54 +2,395 @@ package dev.kyberorg.httpsd.json;
 
 import dev.kyberorg.httpsd.App;
 import dev.kyberorg.httpsd.db.models.Record;
+import dev.kyberorg.httpsd.json.snapshot.FileSnapshot;
+import dev.kyberorg.httpsd.json.snapshot.Payload;
+import dev.kyberorg.httpsd.json.snapshot.RenderedJson;
+import dev.kyberorg.httpsd.json.snapshot.SnapshotCache;
+import dev.kyberorg.httpsd.json.snapshot.SnapshotWatcher;
 import dev.kyberorg.httpsd.services.FileService;
 import dev.kyberorg.httpsd.services.RecordService;
+import dev.kyberorg.httpsd.services.RegistryService;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
+import org.springframework.transaction.TransactionException;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.context.request.async.DeferredResult;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Generates Service Discovery JSON. It will get all {@link Record.Status#ACTIVE} {@link Record}s,
  * transform them to {@link StaticConfig} objects and JSONize them using {@link App#GSON}.
+ * Records are taken from in-memory registry ({@link RegistryService}), not from database.
+ * Rendered JSON is cached in {@link SnapshotCache} until file content changes.
+ * Responses carry {@literal ETag} and {@literal Last-Modified} headers, so conditional requests
+ * with same {@literal If-None-Match} or {@literal If-Modified-Since} are answered with {@literal 304 Not Modified}.
+ * Clients, that accept gzip, get pre-compressed JSON. Rendered JSON is kept off-heap as {@link Payload}
+ * and written by {@link PayloadHttpMessageConverter}.
+ * When cache is disabled ({@literal app.sd.cache.enabled=false}), JSON is streamed directly to response
+ * with {@link StaticConfigWriter} as records are read from database.
+ * <p>
+ * With {@literal ?shard=i&shards=n} only targets of given {@link TargetShard} are returned.
+ * With {@literal ?match=env=prod,team=~db.*} only records with labels matching {@link LabelSelector} are returned.
+ * With {@literal ?compact=true} records with same labels are merged into one entry, see {@link StaticConfig#compact}.
+ * With {@literal ?index=<version>&wait=60s} request waits for file change, see {@link #watchJsonFile}.
+ * <p>
+ * When database is unavailable (or doesn't answer in time), last known good JSON is served
+ * with {@value #STALE_HEADER} header. Streaming mode has no such fallback.
+ * <p>
+ * Requests for files, that don't exist, get empty array. Such filenames are remembered in {@link UnknownFileCache}.
  */
+@Slf4j
 @RequiredArgsConstructor
 @ResponseBody
 @Controller
 public class JsonGenerator {
 
+    private static final Payload EMPTY_JSON = Payload.copyOf("[]".getBytes(StandardCharsets.UTF_8));
+    private static final String GZIP = "gzip";
+    /**
+     * Header with version of file content. Used as {@literal index} of watch requests.
+     */
+    public static final String INDEX_HEADER = "X-HttpSd-Index";
+    /**
+     * Header, that marks last known good JSON, served when database is unavailable.
+     */
+    public static final String STALE_HEADER = "X-HttpSd-Stale";
+    private static final Duration DEFAULT_WAIT = Duration.ofMinutes(1);
+    private static final Duration MAX_WAIT = Duration.ofMinutes(10);
+
+    private final SnapshotCache snapshotCache;
+    private final SnapshotWatcher snapshotWatcher;
+    private final RegistryService registryService;
     private final RecordService recordService;
     private final FileService fileService;
+    private final UnknownFileCache unknownFileCache;
 
     /**
      * Get all {@linkplain /*.json} requests and generates JSON in response.
      *
      * @param file string with filename requested.
+     * @param shard zero-based index of {@link TargetShard}, if only part of targets needed.
+     * @param shards total amount of {@link TargetShard}s, required when {@literal shard} is present.
+     * @param match {@link LabelSelector} expression, if only records with certain labels needed.
+     * @param compact true to merge records with same labels into one entry with all their targets.
+     * @param acceptEncoding value of {@literal Accept-Encoding} header, if any.
+     * @param response servlet response to stream JSON to, when cache is disabled.
      *
-     * @return {@link ResponseEntity} with generated JSON
-     * or {@link ResponseEntity#unprocessableEntity()} if filename is empty.
+     * @return {@link ResponseEntity} with generated JSON,
+     * {@literal 304 Not Modified} if client already has same JSON,
+     * {@link ResponseEntity#unprocessableEntity()} if filename is empty,
+     * {@link ResponseEntity#badRequest()} if shard parameters or selector are invalid
+     * or {@code null} if JSON was already streamed to response.
+     * @throws IOException when streaming JSON to response failed.
      */
     @GetMapping(value ="/{file}.json", produces = "application/json")
-    public ResponseEntity<String> serveJsonFiles(@PathVariable String file) {
-        List<StaticConfig> staticConfigs = new ArrayList<>();
+    public ResponseEntity<Payload> serveJsonFiles(@PathVariable String file,
+            @RequestParam(required = false) Integer shard, @RequestParam(required = false) Integer shards,
+            @RequestParam(required = false) String match, @RequestParam(defaultValue = "false") boolean compact,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            HttpServletResponse response) throws IOException {
         if (StringUtils.isBlank(file)) {
             return ResponseEntity.unprocessableEntity().build();
         }
-        boolean fileNotFound = !fileService.isFileExists(file);
-        if (fileNotFound) {
-            return ResponseEntity.ok(App.GSON.toJson(staticConfigs));
+        TargetShard targetShard;
+        LabelSelector selector;
+        try {
+            targetShard = toTargetShard(shard, shards);
+            selector = toSelector(match);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (!App.get().isSnapshotCacheEnabled()) {
+            if (unknownFileCache.isUnknown(file, fileService::isFileExists)) {
+                return ResponseEntity.ok(EMPTY_JSON);
+            }
+            streamJson(file, selector, targetShard, compact, response);
+            return null;
+        }
+        return respondFromCache(file, selector, targetShard, compact, acceptEncoding);
+    }
+
+    /**
+     * Long-poll variant of {@link #serveJsonFiles}: {@literal /*.json?index=<version>&wait=60s}.
+     * Request is parked (without holding servlet thread) until version of file passes given index
+     * or wait time expires. Either way client gets actual JSON and its version in {@value #INDEX_HEADER} header,
+     * which should be sent as {@literal index} with next request.
+     * Watch requests are always served from {@link SnapshotCache}, even if it is disabled for plain requests.
+     *
+     * @param file string with filename requested.
+     * @param index version client already has (value of {@value #INDEX_HEADER} header from previous response).
+     * @param wait max time to wait for change, like {@literal 60s} or {@literal 5m}.
+     *             Plain number is seconds. Default is {@link #DEFAULT_WAIT}, max is {@link #MAX_WAIT}.
+     * @param shard zero-based index of {@link TargetShard}, if only part of targets needed.
+     * @param shards total amount of {@link TargetShard}s, required when {@literal shard} is present.
+     * @param match {@link LabelSelector} expression, if only records with certain labels needed.
+     * @param compact true to merge records with same labels into one entry with all their targets.
+     * @param acceptEncoding value of {@literal Accept-Encoding} header, if any.
+     *
+     * @return {@link DeferredResult} with same responses as {@link #serveJsonFiles} gives.
+     * {@link ResponseEntity#badRequest()} if wait is not valid duration.
+     */
+    @GetMapping(value ="/{file}.json", params = "index", produces = "application/json")
+    public DeferredResult<ResponseEntity<Payload>> watchJsonFile(@PathVariable String file,
+            @RequestParam long index, @RequestParam(required = false) String wait,
+            @RequestParam(required = false) Integer shard, @RequestParam(required = false) Integer shards,
+            @RequestParam(required = false) String match, @RequestParam(defaultValue = "false") boolean compact,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        if (StringUtils.isBlank(file)) {
+            return completed(ResponseEntity.unprocessableEntity().build());
+        }
+        Duration waitTime;
+        TargetShard targetShard;
+        LabelSelector selector;
+        try {
+            waitTime = toWaitTime(wait);
+            targetShard = toTargetShard(shard, shards);
+            selector = toSelector(match);
+        } catch (IllegalArgumentException e) {
+            return completed(ResponseEntity.badRequest().build());
+        }
+        try {
+            if (isFileNotFound(file)) {
+                return completed(ResponseEntity.ok(EMPTY_JSON));
+            }
+        } catch (DataAccessException | TransactionException e) {
+            return completed(respondStale(file, selector, targetShard, compact, acceptEncoding, e));
+        }
+
+        DeferredResult<ResponseEntity<Payload>> result = new DeferredResult<>(waitTime.toMillis());
+        CompletableFuture<FileSnapshot> change = snapshotWatcher.watch(file, index);
+        change.whenComplete((snapshot, error) -> {
+            if (snapshot != null) {
+                result.setResult(respond(snapshot, selector, targetShard, compact, acceptEncoding, false));
+            } else if (error instanceof DataAccessException || error instanceof TransactionException) {
+                result.setResult(respondStale(file, selector, targetShard, compact, acceptEncoding,
+                        (Exception) error));
+            } else if (!(error instanceof CancellationException)) {
+                result.setErrorResult(error);
+            }
+        });
+        //nothing changed in time - client gets what it already has and comes back with same index
+        result.onTimeout(() ->
+                result.setResult(respondFromCache(file, selector, targetShard, compact, acceptEncoding)));
+        result.onCompletion(() -> change.cancel(false));
+        return result;
+    }
+
+    /**
+     * Writes JSON directly to response, while records are read from database. Nothing is cached.
+     * Non-existing file produces empty array, same as with cache.
+     *
+     * @param file non-empty string with filename requested.
+     * @param selector {@link LabelSelector} to select records by or {@code null} to write all records.
+     * @param shard {@link TargetShard} to filter targets by or {@code null} to write all targets.
+     * @param compact true to merge records with same labels. Merged records have to be collected first,
+     *                so in this case JSON is written only after all records are read.
+     * @param response servlet response to write JSON to.
+     * @throws IOException when writing to response failed.
+     */
+    private void streamJson(final String file, final LabelSelector selector, final TargetShard shard,
+                            final boolean compact, final HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        StaticConfigWriter writer = new StaticConfigWriter(response.getOutputStream());
+        List<StaticConfig> toCompact = new ArrayList<>();
+        recordService.forEachActiveStaticConfigInFile(file, staticConfig -> {
+            if (selector != null && !selector.matches(staticConfig.getLabels())) return;
+            StaticConfig filtered = shard != null ? shard.filter(staticConfig) : staticConfig;
+            if (filtered == null) return;
+            if (compact) {
+                toCompact.add(filtered);
+            } else {
+                writer.write(filtered);
+            }
+        });
+        StaticConfig.compact(toCompact).forEach(writer::write);
+        writer.finish();
+    }
+
+    /**
+     * Builds response with actual JSON from {@link SnapshotCache}.
+     * If database is unavailable, last known good JSON is served instead.
+     *
+     * @param file non-empty string with filename requested.
+     * @param selector {@link LabelSelector} to select records by or {@code null} to return all records.
+     * @param shard {@link TargetShard} to filter targets by or {@code null} to return all targets.
+     * @param compact true to merge records with same labels.
+     * @param acceptEncoding value of {@literal Accept-Encoding} header, can be {@code null}.
+     * @return {@link ResponseEntity} with JSON.
+     */
+    private ResponseEntity<Payload> respondFromCache(final String file, final LabelSelector selector,
+                                                    final TargetShard shard, final boolean compact,
+                                                    final String acceptEncoding) {
+        FileSnapshot snapshot;
+        try {
+            if (isFileNotFound(file)) {
+                return ResponseEntity.ok(EMPTY_JSON);
+            }
+            snapshot = snapshotCache.get(file);
+        } catch (DataAccessException | TransactionException e) {
+            return respondStale(file, selector, shard, compact, acceptEncoding, e);
+        }
+        return respond(snapshot, selector, shard, compact, acceptEncoding, false);
+    }
+
+    /**
+     * Builds response with last known good JSON, marked with {@value #STALE_HEADER} header.
+     *
+     * @param file non-empty string with filename requested.
+     * @param selector {@link LabelSelector} to select records by or {@code null} to return all records.
+     * @param shard {@link TargetShard} to filter targets by or {@code null} to return all targets.
+     * @param compact true to merge records with same labels.
+     * @param acceptEncoding value of {@literal Accept-Encoding} header, can be {@code null}.
+     * @param cause database failure, that prevented serving actual JSON.
+     * @return {@link ResponseEntity} with last known good JSON
+     * or {@link HttpStatus#SERVICE_UNAVAILABLE}, if there is none.
+     * Prometheus keeps previously discovered targets in this case.
+     */
+    private ResponseEntity<Payload> respondStale(final String file, final LabelSelector selector,
+                                                final TargetShard shard, final boolean compact,
+                                                final String acceptEncoding, final Exception cause) {
+        log.warn("Database unavailable, serving last known good {}.json: {}", file, cause.getMessage());
+        return snapshotCache.getLastKnownGood(file)
+                .map(snapshot -> respond(snapshot, selector, shard, compact, acceptEncoding, true))
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build());
+    }
+
+    /**
+     * Builds response with JSON of given view of {@link FileSnapshot}.
+     * Spring replies with 304 itself, when ETag or Last-Modified matches request's conditional headers.
+     *
+     * @param snapshot actual {@link FileSnapshot}.
+     * @param selector {@link LabelSelector} to select records by or {@code null} to return all records.
+     * @param shard {@link TargetShard} to filter targets by or {@code null} to return all targets.
+     * @param compact true to merge records with same labels.
+     * @param acceptEncoding value of {@literal Accept-Encoding} header, can be {@code null}.
+     * @param stale true if {@link FileSnapshot} is known to be outdated.
+     * @return {@link ResponseEntity} with JSON, gzipped if client accepts it,
+     * or {@link ResponseEntity#badRequest()} if selector took too long to evaluate.
+     */
+    private static ResponseEntity<Payload> respond(final FileSnapshot snapshot, final LabelSelector selector,
+                                                  final TargetShard shard, final boolean compact,
+                                                  final String acceptEncoding, final boolean stale) {
+        RenderedJson json;
+        try {
+            json = snapshot.getView(selector, shard, compact);
+        } catch (LabelSelector.EvaluationTimeoutException e) {
+            log.info("Rejected selector {} for {}.json: {}", selector, snapshot.getFileName(), e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+                .header(INDEX_HEADER, String.valueOf(snapshot.getVersion()))
+                .varyBy(HttpHeaders.ACCEPT_ENCODING)
+                .lastModified(snapshot.getLastModified());
+        if (stale) {
+            builder.header(STALE_HEADER, Boolean.TRUE.toString());
+        }
+        if (json.hasGzippedBody() && acceptsGzip(acceptEncoding)) {
+            return builder
+                    .header(HttpHeaders.CONTENT_ENCODING, GZIP)
+                    .eTag(json.getGzippedEtag())
+                    .body(json.getGzippedBody());
+        }
+        return builder
+                .eTag(json.getEtag())
+                .body(json.getBody());
+    }
+
+    private boolean isFileNotFound(final String file) {
+        return unknownFileCache.isUnknown(file,
+                name -> snapshotCache.contains(name) || registryService.getRegistry().hasFile(name));
+    }
+
+    private static TargetShard toTargetShard(final Integer shard, final Integer shards) {
+        if (shard == null && shards == null) return null;
+        if (shard == null || shards == null) {
+            throw new IllegalArgumentException("shard and shards should be used together");
+        }
+        return TargetShard.of(shard, shards);
+    }
+
+    private static LabelSelector toSelector(final String match) {
+        return match != null ? LabelSelector.parse(match) : null;
+    }
+
+    private static Duration toWaitTime(final String wait) {
+        if (StringUtils.isBlank(wait)) return DEFAULT_WAIT;
+        Duration waitTime = DurationStyle.detectAndParse(wait, ChronoUnit.SECONDS);
+        if (waitTime.isNegative() || waitTime.isZero()) {
+            throw new IllegalArgumentException("wait should be positive");
         }
+        return waitTime.compareTo(MAX_WAIT) > 0 ? MAX_WAIT : waitTime;
+    }
+
+    private static DeferredResult<ResponseEntity<Payload>> completed(final ResponseEntity<Payload> response) {
+        DeferredResult<ResponseEntity<Payload>> result = new DeferredResult<>();
+        result.setResult(response);
+        return result;
+    }
 
-        recordService.getRecordsByFile(file).stream()
-                .filter(Record::isActive).map(StaticConfig::create)
-                .forEachOrdered(staticConfigs::add);
+    /**
+     * Defines, if client accepts gzip encoding. Explicit {@literal gzip} entry wins over {@literal *},
+     * either is accepted only with non-zero {@literal q} (missing {@literal q} means 1).
+     *
+     * @param acceptEncoding value of {@literal Accept-Encoding} header, can be {@code null}.
+     * @return true if gzip is accepted, false if not.
+     */
+    private static boolean acceptsGzip(final String acceptEncoding) {
+        if (StringUtils.isBlank(acceptEncoding)) return false;
+        Double gzipQuality = null;
+        Double anyQuality = null;
+        for (String coding : acceptEncoding.toLowerCase(Locale.ENGLISH).split(",")) {
+            String[] parts = coding.split(";");
+            String name = parts[0].trim();
+            if (name.equals(GZIP)) {
+                gzipQuality = quality(parts);
+            } else if (name.equals("*")) {
+                anyQuality = quality(parts);
+            }
+        }
+        Double quality = gzipQuality != null ? gzipQuality : anyQuality;
+        return quality != null && quality > 0;
+    }
 
-        return ResponseEntity.ok(App.GSON.toJson(staticConfigs));
+    /**
+     * Reads {@literal q} parameter of one {@literal Accept-Encoding} entry.
+     *
+     * @param parts entry split by {@literal ;}: coding name first, then parameters.
+     * @return quality from 0 to 1. Missing {@literal q} is 1, malformed one is 0.
+     */
+    private static double quality(final String[] parts) {
+        for (int i = 1; i < parts.length; i++) {
+            String parameter = parts[i].trim();
+            if (!parameter.startsWith("q=")) continue;
+            try {
+                return Double.parseDouble(parameter.substring(2).trim());
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+        return 1;
     }
 }
@@ -0,0 +1,255 @@
+package dev.kyberorg.httpsd.json;
+
+import dev.kyberorg.httpsd.json.snapshot.LabelIndex;
+import org.apache.commons.lang3.StringUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+import java.util.stream.Collectors;
+
+/**
+ * Prometheus-like label selector: comma-separated list of matchers, like {@literal env=prod,team=~db.*}.
+ * Supported operators: {@literal =}, {@literal !=}, {@literal =~} and {@literal !~}. Value can be quoted with
+ * double quotes, when it contains commas. Regular expressions are fully anchored.
+ * Missing label is treated as label with empty value, same as Prometheus does.
+ * <p>
+ * Selectors come from clients, so regular expressions are limited: pattern can be at most
+ * {@value #MAX_REGEX_LENGTH} characters and one evaluation of selector can take at most {@link #MAX_EVALUATION_TIME}.
+ * Slower (e.g. catastrophically backtracking) selector fails with {@link EvaluationTimeoutException}.
+ * <p>
+ * {@link StaticConfig} is selected, when all matchers match its labels.
+ */
+public class LabelSelector {
+    private static final Pattern LABEL_KEY = Pattern.compile("[a-zA-Z_][a-zA-Z0-9_]*");
+    /**
+     * Max length of regular expression in matcher.
+     */
+    public static final int MAX_REGEX_LENGTH = 1024;
+    /**
+     * Max time of one {@link #select} or {@link #matches} call.
+     */
+    public static final Duration MAX_EVALUATION_TIME = Duration.ofSeconds(1);
+
+    private final List<Matcher> matchers;
+
+    private LabelSelector(final List<Matcher> matchers) {
+        this.matchers = matchers;
+    }
+
+    /**
+     * Parses selector expression.
+     *
+     * @param expression non-empty string like {@literal env=prod,team=~db.*}.
+     * @return parsed {@link LabelSelector}.
+     * @throws IllegalArgumentException when expression is not valid.
+     */
+    public static LabelSelector parse(final String expression) {
+        if (StringUtils.isBlank(expression)) throw new IllegalArgumentException("Selector cannot be empty");
+        List<Matcher> matchers = new ArrayList<>();
+        for (String term : splitTerms(expression)) {
+            matchers.add(Matcher.parse(term.trim()));
+        }
+        return new LabelSelector(matchers);
+    }
+
+    /**
+     * Selects records, which labels match all matchers, using {@link LabelIndex}.
+     * Posting lists are intersected starting from the shortest one.
+     *
+     * @param index {@link LabelIndex} to search in.
+     * @return sorted positions of selected records.
+     * @throws EvaluationTimeoutException when regular expressions took longer than {@link #MAX_EVALUATION_TIME}.
+     */
+    public int[] select(final LabelIndex index) {
+        long deadline = deadline();
+        List<int[]> postingLists = matchers.stream().map(matcher -> matcher.find(index, deadline))
+                .sorted(Comparator.comparingInt(postingList -> postingList.length)).toList();
+        int[] result = postingLists.get(0);
+        for (int i = 1; i < postingLists.size() && result.length > 0; i++) {
+            result = LabelIndex.intersect(result, postingLists.get(i));
+        }
+        return result;
+    }
+
+    /**
+     * Defines, if labels match all matchers. Used, when there is no {@link LabelIndex}.
+     *
+     * @param labels labels of {@link StaticConfig}.
+     * @return true if all matchers match, false if not.
+     * @throws EvaluationTimeoutException when regular expressions took longer than {@link #MAX_EVALUATION_TIME}.
+     */
+    public boolean matches(final Map<String, String> labels) {
+        long deadline = deadline();
+        return matchers.stream().allMatch(matcher -> matcher.test(labels.getOrDefault(matcher.key, ""), deadline));
+    }
+
+    /**
+     * Normalized expression. Selectors with same matchers produce same string.
+     *
+     * @return string with all matchers, like {@literal env="prod",team=~"db.*"}.
+     */
+    @Override
+    public String toString() {
+        return matchers.stream().map(Matcher::toString).collect(Collectors.joining(","));
+    }
+
+    private static long deadline() {
+        return System.nanoTime() + MAX_EVALUATION_TIME.toNanos();
+    }
+
+    private static List<String> splitTerms(final String expression) {
+        List<String> terms = new ArrayList<>();
+        StringBuilder term = new StringBuilder();
+        boolean quoted = false;
+        for (char c : expression.toCharArray()) {
+            if (c == '"') {
+                quoted = !quoted;
+            }
+            if (c == ',' && !quoted) {
+                terms.add(term.toString());
+                term.setLength(0);
+            } else {
+                term.append(c);
+            }
+        }
+        if (quoted) throw new IllegalArgumentException("Unclosed quote in selector");
+        terms.add(term.toString());
+        return terms;
+    }
+
+    private enum Operator {
+        //order matters: when signs start at same position, longer one (listed first) wins
+        NOT_REGEX("!~"), REGEX("=~"), NOT_EQUAL("!="), EQUAL("=");
+
+        private final String sign;
+
+        Operator(final String sign) {
+            this.sign = sign;
+        }
+    }
+
+    private static final class Matcher {
+        private final String key;
+        private final Operator operator;
+        private final String value;
+        private final Pattern pattern;
+
+        private Matcher(final String key, final Operator operator, final String value) {
+            this.key = key;
+            this.operator = operator;
+            this.value = value;
+            boolean isRegex = operator == Operator.REGEX || operator == Operator.NOT_REGEX;
+            if (isRegex && value.length() > MAX_REGEX_LENGTH) {
+                throw new IllegalArgumentException("Regular expression is longer than " + MAX_REGEX_LENGTH);
+            }
+            try {
+                this.pattern = isRegex ? Pattern.compile(value) : null;
+            } catch (PatternSyntaxException e) {
+                throw new IllegalArgumentException("Invalid regular expression: " + value, e);
+            }
+        }
+
+        private static Matcher parse(final String term) {
+            Operator operator = null;
+            int position = -1;
+            for (Operator candidate : Operator.values()) {
+                int candidatePosition = term.indexOf(candidate.sign);
+                //first sign in term wins: "a=b!=c" is key "a" and value "b!=c"
+                if (candidatePosition >= 0 && (operator == null || candidatePosition < position)) {
+                    operator = candidate;
+                    position = candidatePosition;
+                }
+            }
+            if (operator == null) throw new IllegalArgumentException("No operator in matcher: " + term);
+
+            String key = term.substring(0, position).trim();
+            String value = unquote(term.substring(position + operator.sign.length()).trim());
+            if (!LABEL_KEY.matcher(key).matches()) {
+                throw new IllegalArgumentException("Invalid label name: " + key);
+            }
+            return new Matcher(key, operator, value);
+        }
+
+        private static String unquote(final String value) {
+            if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+                return value.substring(1, value.length() - 1);
+            }
+            return value;
+        }
+
+        private boolean test(final String labelValue, final long deadline) {
+            return switch (operator) {
+                case EQUAL -> labelValue.equals(value);
+                case NOT_EQUAL -> !labelValue.equals(value);
+                case REGEX -> pattern.matcher(new DeadlineCharSequence(labelValue, deadline)).matches();
+                case NOT_REGEX -> !pattern.matcher(new DeadlineCharSequence(labelValue, deadline)).matches();
+            };
+        }
+
+        private int[] find(final LabelIndex index, final long deadline) {
+            if (operator == Operator.EQUAL && !value.isEmpty()) {
+                //most common case - direct lookup
+                return index.find(key, value);
+            }
+            return index.find(key, labelValue -> test(labelValue, deadline));
+        }
+
+        @Override
+        public String toString() {
+            return key + operator.sign + "\"" + value + "\"";
+        }
+    }
+
+    /**
+     * Label value, that stops regular expression, when deadline is passed. {@link java.util.regex.Matcher}
+     * reads input char by char, so even backtracking pattern is interrupted in time.
+     */
+    private static final class DeadlineCharSequence implements CharSequence {
+        private final CharSequence value;
+        private final long deadline;
+        private int reads;
+
+        private DeadlineCharSequence(final CharSequence value, final long deadline) {
+            this.value = value;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public char charAt(final int index) {
+            //clock is checked every 256 reads only: it costs more than reading char
+            if ((++reads & 0xFF) == 0 && System.nanoTime() - deadline > 0) {
+                throw new EvaluationTimeoutException();
+            }
+            return value.charAt(index);
+        }
+
+        @Override
+        public int length() {
+            return value.length();
+        }
+
+        @Override
+        public CharSequence subSequence(final int start, final int end) {
+            return new DeadlineCharSequence(value.subSequence(start, end), deadline);
+        }
+
+        @Override
+        public String toString() {
+            return value.toString();
+        }
+    }
+
+    /**
+     * Thrown, when selector was evaluated longer than {@link #MAX_EVALUATION_TIME}.
+     */
+    public static class EvaluationTimeoutException extends IllegalArgumentException {
+        public EvaluationTimeoutException() {
+            super("Selector evaluation took longer than " + MAX_EVALUATION_TIME);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package dev.kyberorg.httpsd.json;
+
+import dev.kyberorg.httpsd.json.snapshot.Payload;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+/**
+ * Writes off-heap {@link Payload}s to response. Payload is written in small chunks,
+ * so whole body is never copied to heap. Spring Boot picks this converter up, because it is a bean.
+ * <p>
+ * Servlet API (6.0) has no way to write {@link java.nio.ByteBuffer} to response directly,
+ * so bounded chunk copy is the closest to zero-copy, that is portable between servlet containers.
+ */
+@Component
+public class PayloadHttpMessageConverter extends AbstractHttpMessageConverter<Payload> {
+
+    /**
+     * Creates {@link PayloadHttpMessageConverter}. Should be called by Spring itself, not intended to use directly.
+     */
+    public PayloadHttpMessageConverter() {
+        super(MediaType.APPLICATION_JSON, MediaType.ALL);
+    }
+
+    @Override
+    protected boolean supports(final Class<?> clazz) {
+        return Payload.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    protected boolean canRead(final MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected Payload readInternal(final Class<? extends Payload> clazz, final HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("Payload cannot be read from request", inputMessage);
+    }
+
+    @Override
+    protected Long getContentLength(final Payload payload, final MediaType contentType) {
+        return (long) payload.size();
+    }
+
+    @Override
+    protected void writeInternal(final Payload payload, final HttpOutputMessage outputMessage) throws IOException {
+        payload.writeTo(outputMessage.getBody());
+    }
+}
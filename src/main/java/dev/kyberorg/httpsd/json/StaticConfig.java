@@ -1,14 +1,20 @@
 package dev.kyberorg.httpsd.json;
 
+import dev.kyberorg.httpsd.App;
 import dev.kyberorg.httpsd.db.models.Label;
 import dev.kyberorg.httpsd.db.models.Record;
 import dev.kyberorg.httpsd.db.models.Target;
 import lombok.Data;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
 
 /**
  * Combination of {@link Target}s and {@link Label}s in Prometheus-required format.
@@ -33,4 +39,30 @@ public class StaticConfig {
                 staticConfig.labels.put(label.getLabelKey().getValue(), label.getLabelValue().getValue()));
         return staticConfig;
     }
+
+    /**
+     * Merges {@link StaticConfig}s with identical labels into one {@link StaticConfig} with all their targets.
+     * Result is deterministic: {@link StaticConfig}s are ordered by their labels (sorted by key),
+     * labels are sorted by key and targets are sorted and have no duplicates.
+     *
+     * @param staticConfigs {@link StaticConfig}s to merge. They are not modified.
+     * @return new {@link StaticConfig}s, one per distinct label set.
+     */
+    public static List<StaticConfig> compact(final Collection<StaticConfig> staticConfigs) {
+        Map<String, StaticConfig> groups = new TreeMap<>();
+        Map<String, TreeSet<String>> groupTargets = new HashMap<>();
+        for (StaticConfig staticConfig : staticConfigs) {
+            SortedMap<String, String> sortedLabels = new TreeMap<>(staticConfig.labels);
+            //JSON of sorted labels is unambiguous key of label set and sorts same way every time
+            String groupKey = App.GSON.toJson(sortedLabels);
+            groups.computeIfAbsent(groupKey, key -> {
+                StaticConfig group = new StaticConfig();
+                group.labels = new LinkedHashMap<>(sortedLabels);
+                return group;
+            });
+            groupTargets.computeIfAbsent(groupKey, key -> new TreeSet<>()).addAll(staticConfig.targets);
+        }
+        groups.forEach((groupKey, group) -> group.targets.addAll(groupTargets.get(groupKey)));
+        return new ArrayList<>(groups.values());
+    }
 }
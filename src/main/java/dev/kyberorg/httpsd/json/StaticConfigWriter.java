@@ -0,0 +1,50 @@
+package dev.kyberorg.httpsd.json;
+
+import com.google.gson.stream.JsonWriter;
+import dev.kyberorg.httpsd.App;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes JSON array of {@link StaticConfig}s to {@link OutputStream} one by one, using {@link App#GSON}.
+ * Only one {@link StaticConfig} is held in memory at time, so memory usage does not depend on array size.
+ * Output is identical to {@code App.GSON.toJson(listOfStaticConfigs)}.
+ */
+public class StaticConfigWriter {
+    private final JsonWriter jsonWriter;
+
+    /**
+     * Creates {@link StaticConfigWriter} and opens JSON array.
+     *
+     * @param outputStream stream to write UTF-8 encoded JSON to. It is not closed by this writer.
+     * @throws IOException when writing to stream failed.
+     */
+    public StaticConfigWriter(final OutputStream outputStream) throws IOException {
+        this.jsonWriter = App.GSON.newJsonWriter(
+                new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8)));
+        this.jsonWriter.beginArray();
+    }
+
+    /**
+     * Writes {@link StaticConfig} as next array element.
+     *
+     * @param staticConfig non-empty {@link StaticConfig} object.
+     */
+    public void write(final StaticConfig staticConfig) {
+        App.GSON.toJson(staticConfig, StaticConfig.class, jsonWriter);
+    }
+
+    /**
+     * Closes JSON array and flushes everything written to underlying stream.
+     *
+     * @throws IOException when writing to stream failed.
+     */
+    public void finish() throws IOException {
+        jsonWriter.endArray();
+        jsonWriter.flush();
+    }
+}
@@ -0,0 +1,90 @@
+package dev.kyberorg.httpsd.json;
+
+import lombok.Getter;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * One of {@link #count} slices of targets. Target belongs to slice,
+ * when its hash modulo {@link #count} equals {@link #index}.
+ * <p>
+ * Hash is same as Prometheus {@literal hashmod} relabel action uses (lower 8 bytes of MD5 as unsigned integer),
+ * so {@literal ?shard=i&shards=n} gives exactly the targets, that {@literal hashmod} with {@literal modulus: n}
+ * over {@literal __address__} keeps for {@literal regex: i}.
+ */
+@Getter
+public class TargetShard {
+    /**
+     * Upper limit for {@link #count}. Keeps amount of possible slices (and cached responses) reasonable.
+     */
+    public static final int MAX_SHARDS = 1024;
+
+    private final int index;
+    private final int count;
+
+    private TargetShard(final int index, final int count) {
+        this.index = index;
+        this.count = count;
+    }
+
+    /**
+     * Creates {@link TargetShard}.
+     *
+     * @param index zero-based index of slice.
+     * @param count total amount of slices, from 1 to {@link #MAX_SHARDS}.
+     * @return created {@link TargetShard}.
+     * @throws IllegalArgumentException when index or count is out of range.
+     */
+    public static TargetShard of(final int index, final int count) {
+        if (count < 1 || count > MAX_SHARDS) {
+            throw new IllegalArgumentException("shards should be between 1 and " + MAX_SHARDS);
+        }
+        if (index < 0 || index >= count) {
+            throw new IllegalArgumentException("shard should be between 0 and " + (count - 1));
+        }
+        return new TargetShard(index, count);
+    }
+
+    /**
+     * Defines, if target belongs to this slice.
+     *
+     * @param target non-empty target string.
+     * @return true if target belongs to this slice, false if not.
+     */
+    public boolean contains(final String target) {
+        return Long.remainderUnsigned(hash(target), count) == index;
+    }
+
+    /**
+     * Leaves in {@link StaticConfig} only targets, that belong to this slice.
+     *
+     * @param staticConfig non-empty {@link StaticConfig}.
+     * @return new {@link StaticConfig} with same labels and only matching targets
+     * or {@code null} if none of its targets belong to this slice.
+     */
+    public StaticConfig filter(final StaticConfig staticConfig) {
+        StaticConfig sharded = new StaticConfig();
+        staticConfig.getTargets().stream().filter(this::contains).forEachOrdered(sharded.getTargets()::add);
+        if (sharded.getTargets().isEmpty()) return null;
+        sharded.setLabels(staticConfig.getLabels());
+        return sharded;
+    }
+
+    @Override
+    public String toString() {
+        return index + "/" + count;
+    }
+
+    private static long hash(final String target) {
+        try {
+            byte[] md5 = MessageDigest.getInstance("MD5").digest(target.getBytes(StandardCharsets.UTF_8));
+            return ByteBuffer.wrap(md5, 8, 8).getLong();
+        } catch (NoSuchAlgorithmException e) {
+            //MD5 is required to be supported by every Java platform
+            throw new IllegalStateException(e);
+        }
+    }
+}
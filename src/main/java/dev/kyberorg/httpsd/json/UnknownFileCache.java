@@ -0,0 +1,98 @@
+package dev.kyberorg.httpsd.json;
+
+import dev.kyberorg.httpsd.db.models.File;
+import dev.kyberorg.httpsd.events.FileRebuildEvent;
+import dev.kyberorg.httpsd.registry.Registry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * Remembers filenames, that were requested, but have no {@link File}. Misconfigured jobs and scanners
+ * request same names again and again: they are answered from here without any lookup.
+ * <p>
+ * Cache is bounded: least recently requested names are dropped first. Name is forgotten, as soon as
+ * {@link FileRebuildEvent} for it is received (i.e. {@link File} was created and is in {@link Registry} now).
+ * Until then request for just created {@link File} still gets empty array, as {@link Registry} doesn't have it.
+ * Every request for unknown file is counted in {@literal httpsd.sd.unknown.requests} metric,
+ * every newly seen unknown name is logged once.
+ */
+@Slf4j
+@Component
+public class UnknownFileCache {
+    private static final int CAPACITY = 10_000;
+
+    private final Set<String> unknownFiles = Collections.newSetFromMap(
+            Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(final Map.Entry<String, Boolean> eldest) {
+                    return size() > CAPACITY;
+                }
+            }));
+    /**
+     * Grows with every {@link FileRebuildEvent}. Name, checked before rebuild, is not cached after it.
+     */
+    private final AtomicLong generation = new AtomicLong();
+    private final Counter unknownRequests;
+
+    /**
+     * Creates {@link UnknownFileCache}. Should be called by Spring itself, not intended to use directly.
+     *
+     * @param meterRegistry {@link MeterRegistry} to report unknown file requests to.
+     */
+    public UnknownFileCache(final MeterRegistry meterRegistry) {
+        this.unknownRequests = Counter.builder("httpsd.sd.unknown.requests")
+                .description("Requests for JSON files, that don't exist").register(meterRegistry);
+    }
+
+    /**
+     * Defines, if there is no {@link File} with given filename. Known unknown names are answered from cache,
+     * others are checked with given predicate and remembered, if {@link File} doesn't exist.
+     *
+     * @param fileName non-empty string with filename (without extension).
+     * @param exists check, if {@link File} exists. Called only for names, that are not cached.
+     * @return true if {@link File} doesn't exist, false if it does.
+     */
+    public boolean isUnknown(final String fileName, final Predicate<String> exists) {
+        if (unknownFiles.contains(fileName)) {
+            unknownRequests.increment();
+            return true;
+        }
+        long checkedAt = generation.get();
+        if (exists.test(fileName)) return false;
+
+        unknownRequests.increment();
+        //file created during check must not be cached as unknown
+        if (generation.get() == checkedAt && unknownFiles.add(fileName)) {
+            log.info("Request for unknown file {}.json", fileName);
+            if (generation.get() != checkedAt) {
+                unknownFiles.remove(fileName);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Forgets changed (or just created) {@link File}. Runs after {@link Registry} is updated, so requests
+     * made after that find {@link File} there.
+     *
+     * @param event {@link FileRebuildEvent} with changed {@link File}.
+     */
+    @Order(Ordered.HIGHEST_PRECEDENCE + 2)
+    @EventListener
+    public void onFileRebuild(final FileRebuildEvent event) {
+        generation.incrementAndGet();
+        unknownFiles.remove(event.getFileName());
+    }
+}
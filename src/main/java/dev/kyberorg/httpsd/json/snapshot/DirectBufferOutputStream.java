@@ -0,0 +1,103 @@
+package dev.kyberorg.httpsd.json.snapshot;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * {@link OutputStream}, that collects bytes in direct {@link ByteBuffer}, so assembled body
+ * never exists as heap {@code byte[]}. Result is taken as {@link Payload}.
+ * <p>
+ * Bytes are collected in scratch buffer, that is reused by next stream of same thread, and copied once
+ * into buffer of exact size by {@link #toPayload()}. So steady rendering allocates one direct buffer per result
+ * and no intermediate ones. Scratch buffer is sized from expected size with some headroom, so it rarely grows.
+ * Scratch buffers above {@link #MAX_RETAINED_CAPACITY} are not kept: every thread, that renders
+ * (including request threads rendering views), keeps at most that much off-heap memory. Larger bodies still
+ * need no growth steps, when expected size is known.
+ * Objects of this class are not thread-safe.
+ */
+final class DirectBufferOutputStream extends OutputStream {
+    private static final int MIN_CAPACITY = 8 * 1024;
+    private static final int MAX_RETAINED_CAPACITY = 1024 * 1024;
+    private static final ThreadLocal<ByteBuffer> SCRATCH = new ThreadLocal<>();
+
+    private ByteBuffer buffer;
+
+    /**
+     * Creates {@link DirectBufferOutputStream}.
+     *
+     * @param expectedSize expected amount of bytes (e.g. size of previous result). Buffer grows, if more is written.
+     */
+    DirectBufferOutputStream(final int expectedSize) {
+        int capacity = Math.max(MIN_CAPACITY, expectedSize + expectedSize / 8);
+        ByteBuffer scratch = SCRATCH.get();
+        if (scratch != null && scratch.capacity() >= capacity) {
+            //taken from thread until toPayload(): nested stream on same thread gets own buffer
+            SCRATCH.remove();
+            this.buffer = scratch.clear();
+        } else {
+            this.buffer = ByteBuffer.allocateDirect(capacity);
+        }
+    }
+
+    @Override
+    public void write(final int b) {
+        ensureCapacity(1);
+        buffer.put((byte) b);
+    }
+
+    @Override
+    public void write(final byte[] bytes) {
+        write(bytes, 0, bytes.length);
+    }
+
+    @Override
+    public void write(final byte[] bytes, final int offset, final int length) {
+        ensureCapacity(length);
+        buffer.put(bytes, offset, length);
+    }
+
+    /**
+     * Writes remaining bytes of other buffer. Direct buffer is copied without passing through heap.
+     *
+     * @param bytes {@link ByteBuffer} to copy from its position to its limit.
+     */
+    void write(final ByteBuffer bytes) {
+        ensureCapacity(bytes.remaining());
+        buffer.put(bytes);
+    }
+
+    /**
+     * Amount of bytes written so far.
+     *
+     * @return amount of bytes.
+     */
+    int size() {
+        return buffer.position();
+    }
+
+    /**
+     * Provides written bytes as {@link Payload}. Stream must not be written after.
+     *
+     * @return {@link Payload} with all written bytes in buffer of exact size.
+     */
+    Payload toPayload() {
+        ByteBuffer exact = ByteBuffer.allocateDirect(buffer.position());
+        exact.put(buffer.flip()).flip();
+        if (buffer.capacity() <= MAX_RETAINED_CAPACITY) {
+            ByteBuffer retained = SCRATCH.get();
+            if (retained == null || retained.capacity() < buffer.capacity()) {
+                SCRATCH.set(buffer);
+            }
+        }
+        buffer = null;
+        return Payload.wrap(exact);
+    }
+
+    private void ensureCapacity(final int extra) {
+        if (buffer.remaining() >= extra) return;
+        int capacity = Math.max(buffer.capacity() * 2, buffer.position() + extra);
+        ByteBuffer grown = ByteBuffer.allocateDirect(capacity);
+        grown.put(buffer.flip());
+        buffer = grown;
+    }
+}
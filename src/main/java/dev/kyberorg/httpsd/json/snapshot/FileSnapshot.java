@@ -0,0 +1,290 @@
+package dev.kyberorg.httpsd.json.snapshot;
+
+import dev.kyberorg.httpsd.App;
+import dev.kyberorg.httpsd.db.models.File;
+import dev.kyberorg.httpsd.json.LabelSelector;
+import dev.kyberorg.httpsd.json.StaticConfig;
+import dev.kyberorg.httpsd.json.TargetShard;
+import dev.kyberorg.httpsd.registry.Registry;
+import dev.kyberorg.httpsd.registry.RegistryRecord;
+import dev.kyberorg.httpsd.registry.StringDictionary;
+import lombok.Getter;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Content of one {@link File}: its {@link RegistryRecord}s and their {@link RenderedJson}.
+ * Records are same instances, that {@link Registry} holds, so snapshot keeps no copy of targets and labels.
+ * Derived views ({@link LabelSelector} matches, {@link TargetShard}s) are rendered from same records
+ * on demand and kept while snapshot is actual. Selectors are evaluated against {@link LabelIndex},
+ * which is built once per snapshot, when first needed. Snapshot restored from stored JSON parses it
+ * to records only, when first view is requested: full JSON is served without parsing.
+ * <p>
+ * JSON is assembled right in off-heap memory. Snapshot remembers where JSON of each record starts,
+ * so next snapshot of same {@link File} copies JSON of unchanged records from this one (4 bytes per record)
+ * and renders only new and changed records. No per-record JSON is kept on heap.
+ * <p>
+ * Views are rendered outside of lock of views cache: slow view (e.g. selector with heavy regular expression)
+ * delays only requests for same view, others are served meanwhile.
+ * Objects of this class are immutable (except for internal cache of views).
+ */
+public class FileSnapshot {
+    /**
+     * Max amount of derived views kept per snapshot. Least recently used views are dropped first.
+     */
+    private static final int MAX_VIEWS = 64;
+    /**
+     * Records are rendered in windows of this size, so only one window of rendered JSON is on heap at time.
+     */
+    private static final int RENDER_WINDOW = 8 * 1024;
+
+    /**
+     * Filename (without extension).
+     */
+    @Getter private final String fileName;
+    /**
+     * Version of {@link File} content, this snapshot was rendered for.
+     */
+    @Getter private final long version;
+    /**
+     * Moment, when {@link File} content was last modified.
+     */
+    @Getter private final Instant lastModified;
+    /**
+     * All active records of {@link File} rendered to JSON.
+     */
+    @Getter private final RenderedJson json;
+
+    /**
+     * Active records of {@link File}, ordered as in {@link #json}. {@code null} until first view is requested,
+     * if snapshot was restored from {@link #json} only.
+     */
+    private volatile List<RegistryRecord> records;
+    /**
+     * Position of JSON of each record in body of {@link #json}, followed by position, where JSON of last record ends.
+     * {@code null} for snapshot restored from {@link #json} only.
+     */
+    private final int[] recordOffsets;
+
+    private volatile LabelIndex labelIndex;
+
+    private final Map<String, CompletableFuture<RenderedJson>> views = Collections.synchronizedMap(
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(final Map.Entry<String, CompletableFuture<RenderedJson>> eldest) {
+                    return size() > MAX_VIEWS;
+                }
+            });
+
+    private FileSnapshot(final String fileName, final long version, final List<RegistryRecord> records,
+                         final int[] recordOffsets, final RenderedJson json) {
+        this.fileName = fileName;
+        this.version = version;
+        this.lastModified = Instant.ofEpochMilli(version);
+        this.records = Collections.unmodifiableList(records);
+        this.recordOffsets = recordOffsets;
+        this.json = json;
+    }
+
+    /**
+     * Creates {@link FileSnapshot} from JSON only (e.g. stored one). JSON is served as is,
+     * it is parsed back to records only, when first derived view is requested.
+     *
+     * @param fileName non-empty string with filename (without extension).
+     * @param version version of {@link File} content. It is also epoch millis of last modification.
+     * @param json rendered JSON of active records of {@link File}.
+     */
+    public FileSnapshot(final String fileName, final long version, final RenderedJson json) {
+        this.fileName = fileName;
+        this.version = version;
+        this.lastModified = Instant.ofEpochMilli(version);
+        this.recordOffsets = null;
+        this.json = json;
+    }
+
+    /**
+     * Renders {@link FileSnapshot} of records. JSON of records, that previous snapshot has (same
+     * {@link RegistryRecord} instances), is copied from its body, only other records are rendered.
+     * When called inside {@link ForkJoinPool} (by {@link SnapshotRebuilder}), records are rendered in parallel
+     * on that pool, otherwise on calling thread.
+     *
+     * @param fileName non-empty string with filename (without extension).
+     * @param version version of {@link File} content. It is also epoch millis of last modification.
+     * @param records active {@link RegistryRecord}s of {@link File} ordered by id. {@link List} must not be
+     *                modified after.
+     * @param previous previous snapshot of same {@link File} or {@code null}, if there is none.
+     * @return created {@link FileSnapshot}.
+     */
+    public static FileSnapshot render(final String fileName, final long version, final List<RegistryRecord> records,
+                                      final FileSnapshot previous) {
+        int[] previousPositions = findInPrevious(records, previous);
+        DirectBufferOutputStream body = new DirectBufferOutputStream(
+                previous != null ? previous.json.getBody().size() : 0);
+        int[] offsets = new int[records.size() + 1];
+        boolean parallel = ForkJoinTask.inForkJoinPool();
+        body.write('[');
+        for (int from = 0; from < records.size(); from += RENDER_WINDOW) {
+            int to = Math.min(records.size(), from + RENDER_WINDOW);
+            byte[][] rendered = renderRecords(records, previousPositions, from, to, parallel);
+            for (int i = from; i < to; i++) {
+                if (i > 0) body.write(',');
+                offsets[i] = body.size();
+                if (rendered[i - from] != null) {
+                    body.write(rendered[i - from]);
+                } else {
+                    body.write(previous.recordJson(previousPositions[i]));
+                }
+            }
+        }
+        offsets[records.size()] = body.size();
+        body.write(']');
+        return new FileSnapshot(fileName, version, records, offsets, new RenderedJson(body.toPayload()));
+    }
+
+    /**
+     * Provides JSON with records selected by {@link LabelSelector}
+     * and with only targets from given {@link TargetShard}.
+     *
+     * @param selector {@link LabelSelector} to select records or {@code null} to select all.
+     * @param shard {@link TargetShard} to filter targets or {@code null} to keep all targets.
+     * @param compact true to merge {@link StaticConfig}s with same labels, see {@link StaticConfig#compact}.
+     * @return {@link RenderedJson} of view or {@link #getJson()}, if there is no selector, no shard and no compaction.
+     * @throws LabelSelector.EvaluationTimeoutException when selector took too long to evaluate.
+     */
+    public RenderedJson getView(final LabelSelector selector, final TargetShard shard, final boolean compact) {
+        if (selector == null && shard == null && !compact) return json;
+        String viewKey = "match=" + selector + ";shard=" + shard + ";compact=" + compact;
+        CompletableFuture<RenderedJson> ownRender = new CompletableFuture<>();
+        CompletableFuture<RenderedJson> view = views.putIfAbsent(viewKey, ownRender);
+        if (view != null) {
+            return await(view);
+        }
+        try {
+            RenderedJson rendered = renderView(selector, shard, compact);
+            ownRender.complete(rendered);
+            return rendered;
+        } catch (RuntimeException e) {
+            //failed view is not cached: next request tries again
+            views.remove(viewKey, ownRender);
+            ownRender.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private RenderedJson renderView(final LabelSelector selector, final TargetShard shard, final boolean compact) {
+        List<RegistryRecord> fileRecords = getRecords();
+        IntStream positions = selector != null
+                ? Arrays.stream(selector.select(getLabelIndex()))
+                : IntStream.range(0, fileRecords.size());
+        //static configs of view are temporary: they are dropped, once view is rendered
+        Stream<StaticConfig> selected = positions.mapToObj(fileRecords::get).map(RegistryRecord::toStaticConfig);
+        if (shard != null) {
+            selected = selected.map(shard::filter).filter(Objects::nonNull);
+        }
+        List<StaticConfig> result = selected.toList();
+        return RenderedJson.render(compact ? StaticConfig.compact(result) : result);
+    }
+
+    /**
+     * Finds same {@link RegistryRecord} instances in previous snapshot. Both lists are sorted by id.
+     *
+     * @return position in previous snapshot for each record ({@code -1} if record is not there)
+     * or {@code null}, if nothing can be copied from previous snapshot.
+     */
+    private static int[] findInPrevious(final List<RegistryRecord> records, final FileSnapshot previous) {
+        if (previous == null || previous.recordOffsets == null) return null;
+        List<RegistryRecord> previousRecords = previous.records;
+        int[] positions = new int[records.size()];
+        int j = 0;
+        for (int i = 0; i < records.size(); i++) {
+            RegistryRecord record = records.get(i);
+            while (j < previousRecords.size() && previousRecords.get(j).getId() < record.getId()) j++;
+            positions[i] = j < previousRecords.size() && previousRecords.get(j) == record ? j : -1;
+        }
+        return positions;
+    }
+
+    /**
+     * Renders records in range, which can't be copied from previous snapshot.
+     *
+     * @return JSON of rendered records or {@code null} for records to copy. Index 0 is record at {@code from}.
+     */
+    private static byte[][] renderRecords(final List<RegistryRecord> records, final int[] previousPositions,
+                                          final int from, final int to, final boolean parallel) {
+        byte[][] rendered = new byte[to - from][];
+        IntStream toRender = IntStream.range(from, to)
+                .filter(i -> previousPositions == null || previousPositions[i] < 0);
+        (parallel ? toRender.parallel() : toRender).forEach(i -> rendered[i - from] =
+                App.GSON.toJson(records.get(i).toStaticConfig(), StaticConfig.class).getBytes(StandardCharsets.UTF_8));
+        return rendered;
+    }
+
+    /**
+     * Provides JSON of record from body of this snapshot.
+     *
+     * @param position position of record in {@link #records}.
+     * @return read-only {@link ByteBuffer} over off-heap body.
+     */
+    private ByteBuffer recordJson(final int position) {
+        int start = recordOffsets[position];
+        //JSON of record is followed by comma, except for last one
+        int end = position + 1 < records.size() ? recordOffsets[position + 1] - 1 : recordOffsets[position + 1];
+        return json.getBody().asByteBuffer().slice(start, end - start);
+    }
+
+    private static RenderedJson await(final CompletableFuture<RenderedJson> view) {
+        try {
+            return view.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw e;
+        }
+    }
+
+    private List<RegistryRecord> getRecords() {
+        List<RegistryRecord> parsed = records;
+        if (parsed == null) {
+            synchronized (this) {
+                parsed = records;
+                if (parsed == null) {
+                    String body = StandardCharsets.UTF_8.decode(json.getBody().asByteBuffer()).toString();
+                    StaticConfig[] staticConfigs = App.GSON.fromJson(body, StaticConfig[].class);
+                    //ids of records are not stored: positions are enough for views
+                    StringDictionary dictionary = new StringDictionary();
+                    parsed = IntStream.range(0, staticConfigs.length)
+                            .mapToObj(i -> RegistryRecord.of(i, staticConfigs[i], dictionary)).toList();
+                    records = parsed;
+                }
+            }
+        }
+        return parsed;
+    }
+
+    private LabelIndex getLabelIndex() {
+        LabelIndex index = labelIndex;
+        if (index == null) {
+            synchronized (this) {
+                index = labelIndex;
+                if (index == null) {
+                    index = new LabelIndex(getRecords());
+                    labelIndex = index;
+                }
+            }
+        }
+        return index;
+    }
+}
@@ -0,0 +1,112 @@
+package dev.kyberorg.httpsd.json.snapshot;
+
+import dev.kyberorg.httpsd.registry.RegistryRecord;
+import dev.kyberorg.httpsd.registry.StringDictionary;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Inverted index over labels of {@link RegistryRecord}s: label key → label value → posting list.
+ * Posting list is sorted array of positions of {@link RegistryRecord}s (in list index was built from),
+ * which have given label. Keys and values are same string instances, that {@link StringDictionary} holds,
+ * so index adds only one posting list per distinct label.
+ * Objects of this class are immutable.
+ */
+public class LabelIndex {
+    private static final int[] EMPTY = new int[0];
+
+    /**
+     * Amount of indexed {@link RegistryRecord}s.
+     */
+    @Getter private final int size;
+    private final Map<String, Map<String, int[]>> postings;
+
+    /**
+     * Creates {@link LabelIndex}.
+     *
+     * @param records {@link RegistryRecord}s to index.
+     */
+    public LabelIndex(final List<RegistryRecord> records) {
+        this.size = records.size();
+        Map<String, Map<String, List<Integer>>> lists = new HashMap<>();
+        for (int i = 0; i < records.size(); i++) {
+            int position = i;
+            records.get(i).forEachLabel((key, value) -> lists.computeIfAbsent(key, k -> new HashMap<>())
+                    .computeIfAbsent(value, v -> new ArrayList<>())
+                    .add(position));
+        }
+        Map<String, Map<String, int[]>> index = new HashMap<>();
+        lists.forEach((key, values) -> {
+            Map<String, int[]> valuePostings = new HashMap<>();
+            values.forEach((value, positions) ->
+                    valuePostings.put(value, positions.stream().mapToInt(Integer::intValue).toArray()));
+            index.put(key, Collections.unmodifiableMap(valuePostings));
+        });
+        this.postings = Collections.unmodifiableMap(index);
+    }
+
+    /**
+     * Provides posting list of exact label.
+     *
+     * @param key label key.
+     * @param value label value.
+     * @return sorted positions of {@link RegistryRecord}s with given label. Array must not be modified.
+     */
+    public int[] find(final String key, final String value) {
+        return postings.getOrDefault(key, Collections.emptyMap()).getOrDefault(value, EMPTY);
+    }
+
+    /**
+     * Provides positions of {@link RegistryRecord}s, which value of given key satisfies predicate.
+     * {@link RegistryRecord}s without this key are treated as having empty value.
+     *
+     * @param key label key.
+     * @param valuePredicate condition for label value.
+     * @return sorted positions of matching {@link RegistryRecord}s.
+     */
+    public int[] find(final String key, final Predicate<String> valuePredicate) {
+        Map<String, int[]> values = postings.getOrDefault(key, Collections.emptyMap());
+        boolean emptyMatches = valuePredicate.test("");
+        BitSet result = new BitSet(size);
+        //when missing label matches, it is easier to start from everything and remove what doesn't match
+        if (emptyMatches) result.set(0, size);
+        values.forEach((value, positions) -> {
+            if (valuePredicate.test(value) != emptyMatches) {
+                for (int position : positions) result.set(position, !emptyMatches);
+            }
+        });
+        return result.stream().toArray();
+    }
+
+    /**
+     * Intersects two posting lists.
+     *
+     * @param first sorted positions.
+     * @param second sorted positions.
+     * @return sorted positions present in both lists.
+     */
+    public static int[] intersect(final int[] first, final int[] second) {
+        int[] result = new int[Math.min(first.length, second.length)];
+        int i = 0, j = 0, found = 0;
+        while (i < first.length && j < second.length) {
+            if (first[i] < second[j]) {
+                i++;
+            } else if (first[i] > second[j]) {
+                j++;
+            } else {
+                result[found++] = first[i];
+                i++;
+                j++;
+            }
+        }
+        return found == result.length ? result : Arrays.copyOf(result, found);
+    }
+}
@@ -0,0 +1,267 @@
+package dev.kyberorg.httpsd.json.snapshot;
+
+import dev.kyberorg.httpsd.App;
+import dev.kyberorg.httpsd.db.models.File;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Keeps last successfully rendered JSON of every {@link File} in local directory ({@literal app.sd.store.dir}),
+ * so it can be served, when database is unavailable. Stored JSON survives restarts.
+ * <p>
+ * Everything {@link RenderedJson} consists of is stored: body, its gzip-compressed copy and hash for entity tags.
+ * Stored file is memory-mapped and its parts are served as {@link Payload}s as is, so loading snapshot costs
+ * neither parsing, nor rendering, nor compression, and bytes are read from disk only, when they are sent.
+ * Layout of file (numbers are big-endian):
+ * <pre>
+ * int    magic ({@link #MAGIC})
+ * long   version
+ * short  length of hash, followed by hash in ASCII
+ * int    length of body
+ * int    length of gzip-compressed body ({@code -1} if there is none)
+ * byte[] body
+ * byte[] gzip-compressed body
+ * </pre>
+ * File is written to temporary file first, flushed to disk and then atomically renamed, so reader never sees
+ * half-written snapshot, even after power loss.
+ * <p>
+ * Writes are done by own background thread, so rendering (and request waiting for it) doesn't wait for disk.
+ * Only latest snapshot of each {@link File} is written: snapshots saved while previous write is queued replace it.
+ */
+@Slf4j
+@Component
+public class LastKnownGoodStore {
+    private static final String EXTENSION = ".snapshot";
+    private static final int MAGIC = 0x48534431; //HSD1
+    private static final int FIXED_HEADER_SIZE = Integer.BYTES + Long.BYTES + Short.BYTES + 2 * Integer.BYTES;
+    private static final String TMP_EXTENSION = ".tmp";
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 10;
+
+    private final Path directory;
+    private final Map<String, FileSnapshot> pendingWrites = new ConcurrentHashMap<>();
+    private final ExecutorService writer;
+
+    /**
+     * Creates {@link LastKnownGoodStore}. Should be called by Spring itself, not intended to use directly.
+     *
+     * @param app {@link App} with configured directory.
+     */
+    public LastKnownGoodStore(final App app) {
+        String configuredDir = app.getSnapshotStoreDir();
+        this.directory = StringUtils.isNotBlank(configuredDir) ? Path.of(configuredDir).toAbsolutePath() : null;
+        if (directory != null) {
+            try {
+                Files.createDirectories(directory);
+                log.info("Last known good JSON files are stored at {}", directory);
+            } catch (IOException e) {
+                log.warn("Cannot create directory for last known good JSON files: {}", e.getMessage());
+            }
+        }
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("sd-store-writer-");
+        threadFactory.setDaemon(true);
+        this.writer = Executors.newSingleThreadExecutor(threadFactory);
+    }
+
+    /**
+     * Defines, if store is configured.
+     *
+     * @return true if directory is set, false if store is disabled.
+     */
+    public boolean isEnabled() {
+        return directory != null;
+    }
+
+    /**
+     * Schedules saving JSON of {@link FileSnapshot}, replacing previous one. Returns at once, JSON is written
+     * in background. Failures are logged, but not thrown: serving fresh JSON is more important, than storing it.
+     *
+     * @param snapshot freshly rendered {@link FileSnapshot}.
+     */
+    public void save(final FileSnapshot snapshot) {
+        if (pathOf(snapshot.getFileName()) == null) return;
+        AtomicBoolean alreadyQueued = new AtomicBoolean();
+        pendingWrites.compute(snapshot.getFileName(), (fileName, queued) -> {
+            alreadyQueued.set(queued != null);
+            return queued == null || snapshot.getVersion() >= queued.getVersion() ? snapshot : queued;
+        });
+        //queued write of this file will take latest snapshot
+        if (alreadyQueued.get()) return;
+        writer.execute(() -> {
+            FileSnapshot latest = pendingWrites.remove(snapshot.getFileName());
+            if (latest != null) {
+                write(latest);
+            }
+        });
+    }
+
+    /**
+     * Loads stored JSON of {@link File}.
+     *
+     * @param fileName non-empty string with filename (without extension).
+     * @return {@link Optional} with {@link FileSnapshot} built from stored JSON
+     * or {@link Optional#empty()}, if nothing stored (or stored file cannot be read).
+     */
+    public Optional<FileSnapshot> load(final String fileName) {
+        FileSnapshot pending = pendingWrites.get(fileName);
+        if (pending != null) return Optional.of(pending);
+        Path stored = pathOf(fileName);
+        if (stored == null || !Files.isRegularFile(stored)) return Optional.empty();
+        return read(fileName, stored);
+    }
+
+    /**
+     * Loads all stored JSON files. Used for warm start, so unreadable files are skipped.
+     *
+     * @return {@link List} of {@link FileSnapshot}s built from stored JSON files.
+     */
+    public List<FileSnapshot> loadAll() {
+        if (directory == null || !Files.isDirectory(directory)) return Collections.emptyList();
+        List<FileSnapshot> loaded = new ArrayList<>();
+        try (DirectoryStream<Path> storedFiles = Files.newDirectoryStream(directory, "*" + EXTENSION)) {
+            for (Path stored : storedFiles) {
+                String storedName = stored.getFileName().toString();
+                String fileName = storedName.substring(0, storedName.length() - EXTENSION.length());
+                read(fileName, stored).ifPresent(loaded::add);
+            }
+        } catch (IOException e) {
+            log.warn("Failed to list stored JSON files: {}", e.getMessage());
+        }
+        return loaded;
+    }
+
+    /**
+     * Removes stored JSON of {@link File}, which no longer exists.
+     *
+     * @param fileName non-empty string with filename (without extension).
+     */
+    public void delete(final String fileName) {
+        Path stored = pathOf(fileName);
+        if (stored == null) return;
+        pendingWrites.remove(fileName);
+        //same thread as writes: queued write of this file can't recreate it after delete
+        writer.execute(() -> {
+            try {
+                Files.deleteIfExists(stored);
+            } catch (IOException e) {
+                log.warn("Failed to delete stored {}{}: {}", fileName, EXTENSION, e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Writes queued snapshots before application stops.
+     */
+    @PreDestroy
+    public void shutdown() {
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                log.warn("Not all last known good JSON files were stored before shutdown");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void write(final FileSnapshot snapshot) {
+        Path target = pathOf(snapshot.getFileName());
+        if (target == null) return;
+        Path tmp = target.resolveSibling(target.getFileName() + TMP_EXTENSION);
+        try {
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                RenderedJson json = snapshot.getJson();
+                byte[] hash = json.getHash().getBytes(StandardCharsets.US_ASCII);
+                ByteBuffer header = ByteBuffer.allocate(FIXED_HEADER_SIZE + hash.length);
+                header.putInt(MAGIC).putLong(snapshot.getVersion())
+                        .putShort((short) hash.length).put(hash)
+                        .putInt(json.getBody().size())
+                        .putInt(json.hasGzippedBody() ? json.getGzippedBody().size() : -1)
+                        .flip();
+                while (header.hasRemaining()) {
+                    channel.write(header);
+                }
+                json.getBody().writeTo(channel);
+                if (json.hasGzippedBody()) {
+                    json.getGzippedBody().writeTo(channel);
+                }
+                //content must be on disk before rename, otherwise crash can leave empty file under final name
+                channel.force(true);
+            }
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            syncDirectory();
+        } catch (IOException e) {
+            log.warn("Failed to store {}{}: {}", snapshot.getFileName(), EXTENSION, e.getMessage());
+        }
+    }
+
+    /**
+     * Flushes rename to disk. Not every platform can open directory as channel: then rename is left to OS.
+     */
+    private void syncDirectory() {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            log.trace("Cannot sync directory {}: {}", directory, e.getMessage());
+        }
+    }
+
+    /**
+     * Reads stored file. Only header is read: body and its compressed copy stay memory-mapped
+     * and are read from page cache, when served. Mapping stays valid after file is replaced or deleted.
+     */
+    private Optional<FileSnapshot> read(final String fileName, final Path stored) {
+        try (FileChannel channel = FileChannel.open(stored, StandardOpenOption.READ)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (mapped.remaining() < FIXED_HEADER_SIZE || mapped.getInt() != MAGIC) {
+                throw new IOException("not a stored snapshot");
+            }
+            long version = mapped.getLong();
+            byte[] hash = new byte[mapped.getShort()];
+            mapped.get(hash);
+            int bodySize = mapped.getInt();
+            int gzippedSize = mapped.getInt();
+            if (bodySize < 0 || mapped.remaining() != (long) bodySize + Math.max(0, gzippedSize)) {
+                throw new IOException("file is truncated");
+            }
+            Payload body = Payload.wrap(mapped.slice(mapped.position(), bodySize));
+            Payload gzippedBody = gzippedSize >= 0
+                    ? Payload.wrap(mapped.slice(mapped.position() + bodySize, gzippedSize)) : null;
+            RenderedJson json = RenderedJson.restore(body, new String(hash, StandardCharsets.US_ASCII), gzippedBody);
+            return Optional.of(new FileSnapshot(fileName, version, json));
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to load stored {}{}: {}", fileName, EXTENSION, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    private Path pathOf(final String fileName) {
+        if (directory == null || StringUtils.isBlank(fileName)) return null;
+        Path path = directory.resolve(fileName + EXTENSION).normalize();
+        return directory.equals(path.getParent()) ? path : null;
+    }
+}
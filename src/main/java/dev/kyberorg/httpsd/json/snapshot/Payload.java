@@ -0,0 +1,95 @@
+package dev.kyberorg.httpsd.json.snapshot;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Ready to serve bytes (UTF-8 JSON or its gzip-compressed copy), kept off-heap in direct {@link ByteBuffer}.
+ * Large bodies don't occupy heap (and old generation) and are written to network without
+ * copying them to heap {@code byte[]} as a whole.
+ * Objects of this class are immutable.
+ */
+public class Payload {
+    /**
+     * Size of chunk, used to write to {@link OutputStream}s, that don't accept {@link ByteBuffer}s.
+     */
+    private static final int CHUNK_SIZE = 8 * 1024;
+
+    private final ByteBuffer buffer;
+
+    private Payload(final ByteBuffer buffer) {
+        this.buffer = buffer.asReadOnlyBuffer();
+    }
+
+    /**
+     * Copies bytes to new off-heap {@link Payload}.
+     *
+     * @param bytes bytes to copy. Array is not referenced after.
+     * @return created {@link Payload}.
+     */
+    public static Payload copyOf(final byte[] bytes) {
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+        direct.put(bytes).flip();
+        return new Payload(direct);
+    }
+
+    /**
+     * Wraps bytes without copying them. Used for memory-mapped files: bytes are read from page cache
+     * only, when payload is written, and are not held in heap or copied to direct memory.
+     *
+     * @param buffer {@link ByteBuffer} with payload between its position and limit. It must not be modified after.
+     * @return created {@link Payload}.
+     */
+    public static Payload wrap(final ByteBuffer buffer) {
+        return new Payload(buffer.slice());
+    }
+
+    /**
+     * Size of payload.
+     *
+     * @return amount of bytes.
+     */
+    public int size() {
+        return buffer.capacity();
+    }
+
+    /**
+     * Provides independent read-only view of payload, positioned at start.
+     *
+     * @return new {@link ByteBuffer} over same off-heap memory.
+     */
+    public ByteBuffer asByteBuffer() {
+        return buffer.duplicate();
+    }
+
+    /**
+     * Writes whole payload to channel. Direct buffer is passed to channel as is, without heap copy.
+     *
+     * @param channel {@link WritableByteChannel} to write to.
+     * @throws IOException when writing failed.
+     */
+    public void writeTo(final WritableByteChannel channel) throws IOException {
+        ByteBuffer view = asByteBuffer();
+        while (view.hasRemaining()) {
+            channel.write(view);
+        }
+    }
+
+    /**
+     * Writes whole payload to stream through small reusable chunk, so heap copy never exceeds {@link #CHUNK_SIZE}.
+     *
+     * @param out {@link OutputStream} to write to.
+     * @throws IOException when writing failed.
+     */
+    public void writeTo(final OutputStream out) throws IOException {
+        ByteBuffer view = asByteBuffer();
+        byte[] chunk = new byte[Math.min(CHUNK_SIZE, view.remaining())];
+        while (view.hasRemaining()) {
+            int length = Math.min(chunk.length, view.remaining());
+            view.get(chunk, 0, length);
+            out.write(chunk, 0, length);
+        }
+    }
+}
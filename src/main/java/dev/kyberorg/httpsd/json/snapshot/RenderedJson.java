@@ -0,0 +1,148 @@
+package dev.kyberorg.httpsd.json.snapshot;
+
+import dev.kyberorg.httpsd.json.StaticConfig;
+import dev.kyberorg.httpsd.json.StaticConfigWriter;
+import lombok.Getter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * JSON array of {@link StaticConfig}s, encoded in UTF-8 and ready to be served as is.
+ * Also contains gzip-compressed copy of same JSON, made once when object created.
+ * Both are kept off-heap as {@link Payload}s.
+ * Objects of this class are immutable.
+ */
+@Getter
+public class RenderedJson {
+    /**
+     * Bodies smaller than this are not compressed: gzip headers would eat the whole gain.
+     */
+    public static final int MIN_GZIP_SIZE = 1024;
+
+    private final Payload body;
+    /**
+     * Hex MD5 hash of {@link #body}. Entity tags are made of it.
+     */
+    private final String hash;
+    /**
+     * Strong entity tag (quoted hash of {@link #body}), same content always has same tag.
+     */
+    private final String etag;
+    /**
+     * {@link #body} compressed with gzip or {@code null}, if body is smaller than {@link #MIN_GZIP_SIZE}.
+     */
+    private final Payload gzippedBody;
+    /**
+     * Strong entity tag of {@link #gzippedBody}. Differs from {@link #etag} as required for another encoding.
+     */
+    private final String gzippedEtag;
+
+    /**
+     * Creates {@link RenderedJson}. Body is hashed and compressed straight from off-heap memory.
+     *
+     * @param body rendered JSON in UTF-8.
+     */
+    public RenderedJson(final Payload body) {
+        this(body, hash(body), body.size() >= MIN_GZIP_SIZE ? gzip(body) : null);
+    }
+
+    private RenderedJson(final Payload body, final String hash, final Payload gzippedBody) {
+        this.body = body;
+        this.hash = hash;
+        this.etag = "\"" + hash + "\"";
+        this.gzippedBody = gzippedBody;
+        this.gzippedEtag = "\"" + hash + "-gzip\"";
+    }
+
+    /**
+     * Restores {@link RenderedJson} from parts, that were made by {@link #RenderedJson(Payload)} before
+     * (e.g. stored to disk). Nothing is hashed or compressed again.
+     *
+     * @param body rendered JSON in UTF-8.
+     * @param hash {@link #getHash()} of same body.
+     * @param gzippedBody same body compressed with gzip or {@code null}, if it has no compressed copy.
+     * @return created {@link RenderedJson}.
+     */
+    static RenderedJson restore(final Payload body, final String hash, final Payload gzippedBody) {
+        return new RenderedJson(body, hash, gzippedBody);
+    }
+
+    /**
+     * Renders {@link StaticConfig}s to JSON. JSON is written right to off-heap memory.
+     *
+     * @param staticConfigs {@link StaticConfig}s to render.
+     * @return created {@link RenderedJson}.
+     */
+    public static RenderedJson render(final Collection<StaticConfig> staticConfigs) {
+        DirectBufferOutputStream body = new DirectBufferOutputStream(0);
+        write(staticConfigs, body);
+        return new RenderedJson(body.toPayload());
+    }
+
+    /**
+     * Calculates {@link #getHash()}, that {@link #render(Collection)} would give, without keeping or compressing
+     * rendered JSON. Used to compare content with existing {@link RenderedJson}.
+     *
+     * @param staticConfigs {@link StaticConfig}s to render.
+     * @return hex MD5 hash of rendered JSON.
+     */
+    public static String hashOf(final Collection<StaticConfig> staticConfigs) {
+        MessageDigest md5 = md5();
+        write(staticConfigs, new DigestOutputStream(OutputStream.nullOutputStream(), md5));
+        return HexFormat.of().formatHex(md5.digest());
+    }
+
+    /**
+     * Defines, if gzip-compressed body exists.
+     *
+     * @return true if {@link #gzippedBody} present, false if not.
+     */
+    public boolean hasGzippedBody() {
+        return gzippedBody != null;
+    }
+
+    private static void write(final Collection<StaticConfig> staticConfigs, final OutputStream out) {
+        try {
+            StaticConfigWriter writer = new StaticConfigWriter(out);
+            staticConfigs.forEach(writer::write);
+            writer.finish();
+        } catch (IOException e) {
+            //never happens with in-memory streams
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String hash(final Payload body) {
+        MessageDigest md5 = md5();
+        md5.update(body.asByteBuffer());
+        return HexFormat.of().formatHex(md5.digest());
+    }
+
+    private static Payload gzip(final Payload body) {
+        DirectBufferOutputStream compressed = new DirectBufferOutputStream(body.size() / 4);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            body.writeTo(gzip);
+        } catch (IOException e) {
+            //never happens with in-memory streams
+            throw new UncheckedIOException(e);
+        }
+        return compressed.toPayload();
+    }
+
+    private static MessageDigest md5() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            //MD5 is required to be supported by every Java platform
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package dev.kyberorg.httpsd.json.snapshot;
+
+import dev.kyberorg.httpsd.db.models.File;
+import dev.kyberorg.httpsd.db.models.Record;
+import dev.kyberorg.httpsd.events.FileRebuildEvent;
+import dev.kyberorg.httpsd.json.StaticConfig;
+import dev.kyberorg.httpsd.registry.Registry;
+import dev.kyberorg.httpsd.registry.RegistryRecord;
+import dev.kyberorg.httpsd.services.RecordService;
+import dev.kyberorg.httpsd.services.RegistryService;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory cache of rendered {@link FileSnapshot}s, one per {@link File}.
+ * <p>
+ * Snapshot is rendered from {@link Registry} at first request and served from memory until {@link FileRebuildEvent}
+ * for its {@link File} is received. Every change bumps {@link File}'s version, so snapshot rendered concurrently
+ * with a change is never served as actual. Outdated snapshot is kept until replaced by re-rendered one.
+ * <p>
+ * Concurrent requests for same {@link File} and version share single render: first one renders,
+ * others wait for its result. So burst of scrapes after restart or change costs one set of queries per file.
+ */
+@Slf4j
+@Component
+public class SnapshotCache {
+    private final RecordService recordService;
+    private final RegistryService registryService;
+    private final LastKnownGoodStore lastKnownGoodStore;
+
+    private final Map<String, FileSnapshot> snapshots = new ConcurrentHashMap<>();
+    private final Map<String, Long> versions = new ConcurrentHashMap<>();
+    private final AtomicLong versionSequence = new AtomicLong(System.currentTimeMillis());
+    private final long initialVersion = versionSequence.get();
+    private final Map<RenderKey, CompletableFuture<FileSnapshot>> rendering = new ConcurrentHashMap<>();
+
+    /**
+     * Creates {@link SnapshotCache}. Should be called by Spring itself, not intended to use directly.
+     *
+     * @param recordService service to check {@link Record}s in database.
+     * @param registryService service with {@link Registry} to render snapshots from.
+     * @param lastKnownGoodStore {@link LastKnownGoodStore} to save rendered snapshots to.
+     */
+    public SnapshotCache(final RecordService recordService, final RegistryService registryService,
+                         final LastKnownGoodStore lastKnownGoodStore) {
+        this.recordService = recordService;
+        this.registryService = registryService;
+        this.lastKnownGoodStore = lastKnownGoodStore;
+    }
+
+    /**
+     * Provides actual {@link FileSnapshot} for existing {@link File}. Renders it, if not cached yet or outdated.
+     * If same version is already being rendered by other thread, waits for that render instead.
+     *
+     * @param fileName non-empty string with filename (without extension) of existing {@link File}.
+     * @return actual {@link FileSnapshot}.
+     */
+    public FileSnapshot get(final String fileName) {
+        long version = getVersion(fileName);
+        FileSnapshot snapshot = snapshots.get(fileName);
+        if (snapshot != null && snapshot.getVersion() == version) {
+            return snapshot;
+        }
+
+        RenderKey key = new RenderKey(fileName, version);
+        CompletableFuture<FileSnapshot> ownRender = new CompletableFuture<>();
+        CompletableFuture<FileSnapshot> inFlight = rendering.putIfAbsent(key, ownRender);
+        if (inFlight != null) {
+            return await(inFlight);
+        }
+        try {
+            //other render could finish between first check and taking the slot
+            FileSnapshot cached = snapshots.get(fileName);
+            FileSnapshot rendered = cached != null && cached.getVersion() == version
+                    ? cached : render(fileName, version);
+            snapshots.merge(fileName, rendered,
+                    (current, fresh) -> fresh.getVersion() >= current.getVersion() ? fresh : current);
+            ownRender.complete(rendered);
+            return rendered;
+        } catch (RuntimeException e) {
+            ownRender.completeExceptionally(e);
+            throw e;
+        } finally {
+            rendering.remove(key, ownRender);
+        }
+    }
+
+    /**
+     * Provides latest successfully rendered {@link FileSnapshot} without touching database.
+     * Used, when actual snapshot cannot be rendered.
+     *
+     * @param fileName non-empty string with filename (without extension).
+     * @return {@link Optional} with cached (possibly outdated) {@link FileSnapshot}, or one from
+     * {@link LastKnownGoodStore}, if nothing cached. {@link Optional#empty()} if there is none.
+     */
+    public Optional<FileSnapshot> getLastKnownGood(final String fileName) {
+        FileSnapshot cached = snapshots.get(fileName);
+        return cached != null ? Optional.of(cached) : lastKnownGoodStore.load(fileName);
+    }
+
+    /**
+     * Defines, if {@link File} with given filename has snapshot (actual or outdated) in cache.
+     * Only existing {@link File}s are cached, so this can be used instead of querying database.
+     *
+     * @param fileName non-empty string with filename (without extension).
+     * @return true if snapshot of given {@link File} was rendered before, false if not.
+     */
+    public boolean contains(final String fileName) {
+        return snapshots.containsKey(fileName);
+    }
+
+    /**
+     * Installs previously stored {@link FileSnapshot} as actual one, unless {@link File} already has snapshot
+     * or was changed. Used for warm start: snapshot is served until {@link #isDifferentFromDatabase} check
+     * finds it outdated.
+     *
+     * @param snapshot {@link FileSnapshot} loaded from {@link LastKnownGoodStore}.
+     */
+    public void preload(final FileSnapshot snapshot) {
+        if (versions.putIfAbsent(snapshot.getFileName(), snapshot.getVersion()) == null) {
+            snapshots.putIfAbsent(snapshot.getFileName(), snapshot);
+        }
+    }
+
+    /**
+     * Renders {@link File} from database and compares it with cached snapshot. Cache is not modified.
+     *
+     * @param fileName non-empty string with filename (without extension) of existing {@link File}.
+     * @return true if cached snapshot has other content than database has, false if it has same content
+     * or nothing is cached.
+     */
+    public boolean isDifferentFromDatabase(final String fileName) {
+        FileSnapshot cached = snapshots.get(fileName);
+        if (cached == null) return false;
+        List<StaticConfig> staticConfigs = new ArrayList<>();
+        recordService.forEachActiveStaticConfigInFile(fileName, staticConfigs::add);
+        return !RenderedJson.hashOf(staticConfigs).equals(cached.getJson().getHash());
+    }
+
+    /**
+     * Removes snapshot of {@link File}, which no longer exists, from cache and {@link LastKnownGoodStore}.
+     *
+     * @param fileName non-empty string with filename (without extension).
+     */
+    public void evict(final String fileName) {
+        snapshots.remove(fileName);
+        lastKnownGoodStore.delete(fileName);
+    }
+
+    /**
+     * Provides current version of {@link File} content.
+     *
+     * @param fileName non-empty string with filename (without extension).
+     * @return version, that grows every time {@link File} content changes.
+     * Version is also epoch millis of last change (or of application start, if there were no changes).
+     */
+    public long getVersion(final String fileName) {
+        return versions.getOrDefault(fileName, initialVersion);
+    }
+
+    /**
+     * Marks snapshot of changed {@link File} as outdated. It will be re-rendered on next request.
+     * Runs right after {@link RegistryService} has updated {@link Registry} and before other listeners,
+     * so they see new version.
+     *
+     * @param event {@link FileRebuildEvent} with changed {@link File}.
+     */
+    @Order(Ordered.HIGHEST_PRECEDENCE + 1)
+    @EventListener
+    public void onFileRebuild(final FileRebuildEvent event) {
+        long version = versionSequence.updateAndGet(previous -> Math.max(previous + 1, System.currentTimeMillis()));
+        versions.put(event.getFileName(), version);
+        log.debug("Snapshot of {}.json invalidated", event.getFileName());
+    }
+
+    private static FileSnapshot await(final CompletableFuture<FileSnapshot> inFlight) {
+        try {
+            return inFlight.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw e;
+        }
+    }
+
+    private FileSnapshot render(final String fileName, final long version) {
+        List<RegistryRecord> records = registryService.getRegistry().getRecords(fileName);
+        //JSON of unchanged records is copied from previous snapshot, only changed ones are rendered
+        FileSnapshot snapshot = FileSnapshot.render(fileName, version, records, snapshots.get(fileName));
+        lastKnownGoodStore.save(snapshot);
+        return snapshot;
+    }
+
+    @Value
+    private static class RenderKey {
+        String fileName;
+        long version;
+    }
+}
@@ -0,0 +1,209 @@
+package dev.kyberorg.httpsd.json.snapshot;
+
+import dev.kyberorg.httpsd.App;
+import dev.kyberorg.httpsd.db.models.File;
+import dev.kyberorg.httpsd.events.BulkChangeEvent;
+import dev.kyberorg.httpsd.events.FileRebuildEvent;
+import dev.kyberorg.httpsd.registry.Registry;
+import dev.kyberorg.httpsd.services.RegistryService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Renders snapshots of many {@link File}s at once (at start, after bulk changes) in parallel.
+ * On {@link BulkChangeEvent} changed {@link File}s are first reloaded to {@link Registry} together
+ * (see {@link RegistryService#reloadFiles}), then rendered.
+ * <p>
+ * Work is split per {@link File} over {@link ForkJoinPool} with one thread per available core.
+ * Records of big {@link File}s are additionally rendered in parallel on same pool (see {@link FileSnapshot#render}),
+ * so single huge {@link File} doesn't keep one thread busy while others idle.
+ * Progress is logged and exposed as {@literal httpsd.snapshot.rebuild.*} metrics.
+ * <p>
+ * One rebuild runs at time. {@link File}s requested meanwhile are queued and rendered by running rebuild
+ * in one more pass, once current one is done.
+ */
+@Slf4j
+@Component
+public class SnapshotRebuilder {
+    private static final int PROGRESS_STEPS = 10;
+
+    private final App app;
+    private final SnapshotCache snapshotCache;
+    private final RegistryService registryService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    private final AtomicBoolean running = new AtomicBoolean();
+    /**
+     * {@link File}s to render in next pass of rebuild.
+     */
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+
+    private final AtomicInteger filesTotal = new AtomicInteger();
+    private final AtomicInteger filesDone = new AtomicInteger();
+    private final Timer rebuildTimer;
+    private final Counter failedFiles;
+
+    /**
+     * Creates {@link SnapshotRebuilder}. Should be called by Spring itself, not intended to use directly.
+     *
+     * @param app {@link App} with configuration.
+     * @param snapshotCache {@link SnapshotCache} to render snapshots into.
+     * @param registryService service with {@link Registry} to take {@link File}s from.
+     * @param eventPublisher publisher for {@link FileRebuildEvent}s of {@link File}s, reloaded after bulk change.
+     * @param meterRegistry {@link MeterRegistry} to report metrics to.
+     */
+    public SnapshotRebuilder(final App app, final SnapshotCache snapshotCache,
+                             final RegistryService registryService, final ApplicationEventPublisher eventPublisher,
+                             final MeterRegistry meterRegistry) {
+        this.app = app;
+        this.snapshotCache = snapshotCache;
+        this.registryService = registryService;
+        this.eventPublisher = eventPublisher;
+        this.rebuildTimer = Timer.builder("httpsd.snapshot.rebuild")
+                .description("Wall time of rendering many files at once").register(meterRegistry);
+        this.failedFiles = Counter.builder("httpsd.snapshot.rebuild.failed")
+                .description("Files, that failed to render during rebuild").register(meterRegistry);
+        meterRegistry.gauge("httpsd.snapshot.rebuild.files", filesTotal);
+        meterRegistry.gauge("httpsd.snapshot.rebuild.files.done", filesDone);
+    }
+
+    /**
+     * Renders all {@link File}s in background after start, if enabled.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (app.isSnapshotCacheEnabled() && app.isSnapshotRebuildOnStartEnabled()) {
+            pool.execute(this::rebuildAll);
+        }
+    }
+
+    /**
+     * Reloads and renders {@link File}s of bulk change in background.
+     *
+     * @param event {@link BulkChangeEvent} with changed {@link File}s.
+     */
+    @EventListener
+    public void onBulkChange(final BulkChangeEvent event) {
+        pool.execute(() -> rebuildFiles(event.getFileNames()));
+    }
+
+    /**
+     * Renders actual snapshots of all {@link File}s in parallel. Up-to-date snapshots are not rendered again.
+     * If rebuild is already running, {@link File}s are rendered after it.
+     */
+    public void rebuildAll() {
+        render(new ArrayList<>(registryService.getRegistry().getFileNames()));
+    }
+
+    /**
+     * Reloads changed {@link File}s from database in parallel, marks their snapshots outdated
+     * (with {@link FileRebuildEvent}, so watching clients are notified) and renders them in parallel.
+     *
+     * @param fileNames filenames (without extension) of changed {@link File}s.
+     */
+    public void rebuildFiles(final Collection<String> fileNames) {
+        try {
+            long start = System.currentTimeMillis();
+            registryService.reloadFiles(fileNames);
+            fileNames.forEach(fileName -> eventPublisher.publishEvent(new FileRebuildEvent(fileName, true)));
+            log.info("Reloaded {} changed files in {} ms", fileNames.size(), System.currentTimeMillis() - start);
+        } catch (RuntimeException e) {
+            log.warn("Failed to reload {} changed files: {}", fileNames.size(), e.getMessage());
+            return;
+        }
+        if (app.isSnapshotCacheEnabled()) {
+            render(new ArrayList<>(fileNames));
+        }
+    }
+
+    private void render(final List<String> fileNames) {
+        pending.addAll(fileNames);
+        //pass of running rebuild, that ends after files were queued, sees them and takes one more pass
+        while (!pending.isEmpty() && running.compareAndSet(false, true)) {
+            try {
+                while (!pending.isEmpty()) {
+                    List<String> pass = new ArrayList<>(pending);
+                    pending.removeAll(pass);
+                    renderPass(pass);
+                }
+            } finally {
+                running.set(false);
+            }
+        }
+        if (running.get() && !pending.isEmpty()) {
+            log.info("Snapshot rebuild is already running, {} files will be rendered after it", fileNames.size());
+        }
+    }
+
+    private void renderPass(final List<String> fileNames) {
+        try {
+            rebuildTimer.record(() -> {
+                filesTotal.set(fileNames.size());
+                filesDone.set(0);
+                log.info("Rebuilding {} file snapshots on {} threads", fileNames.size(), pool.getParallelism());
+                long start = System.currentTimeMillis();
+                List<FileTask> tasks = fileNames.stream().map(FileTask::new).toList();
+                pool.invoke(ForkJoinTask.adapt(() -> {
+                    ForkJoinTask.invokeAll(tasks);
+                }));
+                log.info("Rebuilt {} file snapshots in {} ms", fileNames.size(), System.currentTimeMillis() - start);
+            });
+        } catch (RuntimeException e) {
+            log.warn("Snapshot rebuild failed: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    private void reportProgress() {
+        int done = filesDone.incrementAndGet();
+        int total = filesTotal.get();
+        int step = Math.max(1, total / PROGRESS_STEPS);
+        if (done % step == 0 && done < total) {
+            log.info("Snapshot rebuild: {}/{} files", done, total);
+        }
+    }
+
+    /**
+     * Renders one {@link File}.
+     */
+    private final class FileTask extends RecursiveAction {
+        private final String fileName;
+
+        private FileTask(final String fileName) {
+            this.fileName = fileName;
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                snapshotCache.get(fileName);
+            } catch (RuntimeException e) {
+                failedFiles.increment();
+                log.warn("Failed to rebuild {}.json: {}", fileName, e.getMessage());
+            }
+            reportProgress();
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package dev.kyberorg.httpsd.json.snapshot;
+
+import dev.kyberorg.httpsd.App;
+import dev.kyberorg.httpsd.db.models.File;
+import dev.kyberorg.httpsd.events.FileChangedEvent;
+import dev.kyberorg.httpsd.services.FileService;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Warm start: fills {@link SnapshotCache} with JSON files from {@link LastKnownGoodStore} before web server starts,
+ * so first scrapes after restart are answered from memory instead of database.
+ * Stored files are only memory-mapped: nothing is parsed, rendered or compressed before start,
+ * so startup time doesn't grow with amount of targets.
+ * <p>
+ * Preloaded snapshots are checked against database in background thread, once application is ready.
+ * {@link File}s, that were changed while application was down, get {@link FileChangedEvent}
+ * (so they are re-rendered and watching clients are notified), deleted ones are evicted.
+ * <p>
+ * Warm start doesn't let application start without database: Liquibase migrates schema before
+ * web server starts, so start still fails, when database is unreachable.
+ */
+@Slf4j
+@RequiredArgsConstructor
+@Component
+public class SnapshotWarmer {
+    private final App app;
+    private final SnapshotCache snapshotCache;
+    private final LastKnownGoodStore lastKnownGoodStore;
+    private final FileService fileService;
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final List<String> preloaded = Collections.synchronizedList(new ArrayList<>());
+
+    /**
+     * Maps stored JSON files into {@link SnapshotCache}.
+     */
+    @PostConstruct
+    public void preload() {
+        if (!isWarmStartEnabled()) return;
+        long start = System.currentTimeMillis();
+        for (FileSnapshot snapshot : lastKnownGoodStore.loadAll()) {
+            snapshotCache.preload(snapshot);
+            preloaded.add(snapshot.getFileName());
+        }
+        if (!preloaded.isEmpty()) {
+            log.info("Preloaded {} JSON files in {} ms", preloaded.size(), System.currentTimeMillis() - start);
+        }
+    }
+
+    /**
+     * Starts background check of preloaded snapshots against database.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (preloaded.isEmpty()) return;
+        Thread reconciler = new Thread(this::reconcile, "snapshot-reconcile");
+        reconciler.setDaemon(true);
+        reconciler.start();
+    }
+
+    private void reconcile() {
+        int changed = 0;
+        int deleted = 0;
+        for (String fileName : preloaded) {
+            try {
+                if (!fileService.isFileExists(fileName)) {
+                    snapshotCache.evict(fileName);
+                    deleted++;
+                } else if (snapshotCache.isDifferentFromDatabase(fileName)) {
+                    eventPublisher.publishEvent(new FileChangedEvent(fileName));
+                    changed++;
+                }
+            } catch (RuntimeException e) {
+                //cannot confirm snapshot: mark it outdated, so requests go to database (or get it as stale)
+                log.warn("Failed to check preloaded {}.json against database: {}", fileName, e.getMessage());
+                eventPublisher.publishEvent(new FileChangedEvent(fileName));
+                changed++;
+            }
+        }
+        log.info("Checked {} preloaded JSON files: {} changed, {} deleted", preloaded.size(), changed, deleted);
+        preloaded.clear();
+    }
+
+    private boolean isWarmStartEnabled() {
+        return app.isSnapshotCacheEnabled() && app.isSnapshotWarmStartEnabled()
+                && lastKnownGoodStore.isEnabled();
+    }
+}
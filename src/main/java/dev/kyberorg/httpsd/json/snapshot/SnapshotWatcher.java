@@ -0,0 +1,130 @@
+package dev.kyberorg.httpsd.json.snapshot;
+
+import dev.kyberorg.httpsd.db.models.File;
+import dev.kyberorg.httpsd.events.FileRebuildEvent;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Lets clients wait for change of {@link File} without holding a thread.
+ * <p>
+ * Waiting client gets {@link CompletableFuture}, which is completed with new {@link FileSnapshot},
+ * once {@link File}'s version passes the one client already has. New snapshot is rendered
+ * by small pool of own threads, so neither writer nor servlet threads are blocked.
+ */
+@Slf4j
+@Component
+public class SnapshotWatcher {
+    private static final int RENDER_THREADS = 2;
+
+    private final SnapshotCache snapshotCache;
+    private final Map<String, Set<Watch>> watches = new ConcurrentHashMap<>();
+    private final ExecutorService renderExecutor;
+
+    /**
+     * Creates {@link SnapshotWatcher}. Should be called by Spring itself, not intended to use directly.
+     *
+     * @param snapshotCache {@link SnapshotCache} to get versions and snapshots from.
+     */
+    public SnapshotWatcher(final SnapshotCache snapshotCache) {
+        this.snapshotCache = snapshotCache;
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("snapshot-watch-");
+        threadFactory.setDaemon(true);
+        this.renderExecutor = Executors.newFixedThreadPool(RENDER_THREADS, threadFactory);
+    }
+
+    /**
+     * Waits until version of existing {@link File} becomes bigger than given index.
+     * Cancel returned {@link CompletableFuture}, when client no longer waits.
+     *
+     * @param fileName non-empty string with filename (without extension) of existing {@link File}.
+     * @param index version client already has.
+     * @return {@link CompletableFuture}, completed with actual {@link FileSnapshot} after change.
+     * If version is already bigger than index, it is completed without waiting.
+     */
+    public CompletableFuture<FileSnapshot> watch(final String fileName, final long index) {
+        Watch watch = new Watch(index);
+        //set is changed inside compute only, so it can't be dropped, while watch is added to it
+        watches.compute(fileName, (name, fileWatches) -> {
+            Set<Watch> current = fileWatches != null ? fileWatches : ConcurrentHashMap.newKeySet();
+            current.add(watch);
+            return current;
+        });
+        watch.future.whenComplete((snapshot, error) -> unregister(fileName, watch));
+        //version is checked after registration, so change made in between is not lost
+        if (snapshotCache.getVersion(fileName) > index) {
+            fire(fileName, watch);
+        }
+        return watch.future;
+    }
+
+    /**
+     * Wakes up clients waiting for changed {@link File}.
+     * Runs after {@link SnapshotCache} has bumped version of {@link File}.
+     *
+     * @param event {@link FileRebuildEvent} with changed {@link File}.
+     */
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    @EventListener
+    public void onFileRebuild(final FileRebuildEvent event) {
+        Set<Watch> fileWatches = watches.get(event.getFileName());
+        if (fileWatches == null || fileWatches.isEmpty()) return;
+        long version = snapshotCache.getVersion(event.getFileName());
+        for (Watch watch : fileWatches) {
+            if (version > watch.index) {
+                fire(event.getFileName(), watch);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        renderExecutor.shutdownNow();
+    }
+
+    /**
+     * Removes finished watch. Set of {@link File} is removed together with its last watch,
+     * so filenames, that nobody waits for, don't stay in memory.
+     */
+    private void unregister(final String fileName, final Watch watch) {
+        watches.computeIfPresent(fileName, (name, fileWatches) -> {
+            fileWatches.remove(watch);
+            return fileWatches.isEmpty() ? null : fileWatches;
+        });
+    }
+
+    private void fire(final String fileName, final Watch watch) {
+        if (!watch.fired.compareAndSet(false, true)) return;
+        renderExecutor.execute(() -> {
+            try {
+                watch.future.complete(snapshotCache.get(fileName));
+            } catch (Exception e) {
+                log.warn("Failed to render {}.json for watching client: {}", fileName, e.getMessage());
+                watch.future.completeExceptionally(e);
+            }
+        });
+    }
+
+    private static final class Watch {
+        private final long index;
+        private final CompletableFuture<FileSnapshot> future = new CompletableFuture<>();
+        private final AtomicBoolean fired = new AtomicBoolean();
+
+        private Watch(final long index) {
+            this.index = index;
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package dev.kyberorg.httpsd.json.sse;
+
+import dev.kyberorg.httpsd.App;
+import dev.kyberorg.httpsd.db.models.File;
+import dev.kyberorg.httpsd.events.RecordChangedEvent;
+import jakarta.annotation.PreDestroy;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pushes {@link RecordChangedEvent}s to subscribed clients as Server-Sent Events.
+ * <p>
+ * There is single publisher: {@link #onRecordChanged} only puts event to bounded queue of each subscriber
+ * and never writes to network (nor completes emitters), so writer of {@link dev.kyberorg.httpsd.db.models.Record}
+ * is never blocked. Queues are drained to clients by small pool of own threads. Subscriber, which queue is full
+ * (client reads slower than events come), is disconnected and can re-subscribe.
+ * <p>
+ * Client with full TCP window blocks its sender thread. Write, that takes longer than {@link #WRITE_TIMEOUT},
+ * disconnects subscriber and pool gets extra thread instead of blocked one, so other subscribers are still served.
+ * Idle subscribers get heartbeat comment every {@link #HEARTBEAT_INTERVAL}, so proxies don't cut idle stream.
+ */
+@Slf4j
+@Component
+public class ChangeBroadcaster {
+    private static final int QUEUE_SIZE = 256;
+    private static final int SENDER_THREADS = 2;
+    /**
+     * Max amount of extra sender threads, replacing blocked ones. Blocked thread returns to pool,
+     * when its write finally fails (at latest, when servlet container times connection out).
+     */
+    private static final int MAX_EXTRA_SENDER_THREADS = 64;
+    private static final Duration WRITE_TIMEOUT = Duration.ofSeconds(10);
+    private static final Duration HEARTBEAT_INTERVAL = Duration.ofSeconds(15);
+    private static final long EMITTER_TIMEOUT_MILLIS = 30 * 60 * 1000L;
+    private static final String EVENT_NAME = "record";
+    private static final Message HEARTBEAT = new Message(0, null);
+
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private final AtomicLong eventSequence = new AtomicLong();
+    private final ThreadPoolExecutor senders;
+    private final ScheduledExecutorService watchdog;
+    private int extraSenders;
+
+    /**
+     * Creates {@link ChangeBroadcaster}. Should be called by Spring itself, not intended to use directly.
+     */
+    public ChangeBroadcaster() {
+        CustomizableThreadFactory senderFactory = new CustomizableThreadFactory("sse-sender-");
+        senderFactory.setDaemon(true);
+        this.senders = new ThreadPoolExecutor(SENDER_THREADS, SENDER_THREADS, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), senderFactory);
+
+        CustomizableThreadFactory watchdogFactory = new CustomizableThreadFactory("sse-watchdog-");
+        watchdogFactory.setDaemon(true);
+        this.watchdog = Executors.newSingleThreadScheduledExecutor(watchdogFactory);
+        watchdog.scheduleWithFixedDelay(this::dropBlockedSubscribers, 1, 1, TimeUnit.SECONDS);
+        watchdog.scheduleWithFixedDelay(this::sendHeartbeats, HEARTBEAT_INTERVAL.toMillis(),
+                HEARTBEAT_INTERVAL.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Subscribes new client.
+     *
+     * @param fileName filename (without extension) of {@link File} to get events for or {@code null} for all files.
+     * @return {@link SseEmitter} to return from controller.
+     */
+    public SseEmitter subscribe(final String fileName) {
+        SseEmitter emitter = new SseEmitter(EMITTER_TIMEOUT_MILLIS);
+        Subscriber subscriber = new Subscriber(fileName, emitter);
+        subscribers.add(subscriber);
+        emitter.onCompletion(() -> forget(subscriber));
+        emitter.onTimeout(() -> forget(subscriber));
+        emitter.onError(error -> forget(subscriber));
+        return emitter;
+    }
+
+    /**
+     * Passes event to queues of interested subscribers.
+     *
+     * @param event {@link RecordChangedEvent} to push.
+     */
+    @EventListener
+    public void onRecordChanged(final RecordChangedEvent event) {
+        if (subscribers.isEmpty()) return;
+        Message message = new Message(eventSequence.incrementAndGet(), App.GSON.toJson(event));
+        for (Subscriber subscriber : subscribers) {
+            if (!subscriber.isInterestedIn(event)) continue;
+            enqueue(subscriber, message);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        watchdog.shutdownNow();
+        subscribers.forEach(this::close);
+        senders.shutdown();
+    }
+
+    private void enqueue(final Subscriber subscriber, final Message message) {
+        if (subscriber.queue.offer(message)) {
+            scheduleSending(subscriber);
+        } else {
+            log.info("Dropping slow SSE subscriber: {} events not sent", QUEUE_SIZE);
+            close(subscriber);
+        }
+    }
+
+    /**
+     * Disconnects subscriber. Emitter is completed by sender thread, after its current write (if any),
+     * so caller never waits for network.
+     */
+    private void close(final Subscriber subscriber) {
+        forget(subscriber);
+        scheduleSending(subscriber);
+    }
+
+    private void forget(final Subscriber subscriber) {
+        subscriber.closed = true;
+        subscribers.remove(subscriber);
+        subscriber.queue.clear();
+    }
+
+    private void scheduleSending(final Subscriber subscriber) {
+        //at most one sender per subscriber, so events are sent in order
+        if (subscriber.sending.compareAndSet(false, true)) {
+            senders.execute(() -> send(subscriber));
+        }
+    }
+
+    private void send(final Subscriber subscriber) {
+        try {
+            Message message;
+            while (!subscriber.closed && (message = subscriber.queue.poll()) != null) {
+                subscriber.writeStartedAt = System.nanoTime();
+                subscriber.emitter.send(toEvent(message));
+                subscriber.writeStartedAt = 0;
+            }
+            if (subscriber.closed) {
+                subscriber.emitter.complete();
+            }
+        } catch (IOException | IllegalStateException e) {
+            //client gone or emitter already completed
+            forget(subscriber);
+        } finally {
+            subscriber.writeStartedAt = 0;
+            releaseExtraSender(subscriber);
+            subscriber.sending.set(false);
+        }
+        //event could be queued after last poll, but before flag was reset
+        if (!subscriber.queue.isEmpty() && !subscriber.closed) {
+            scheduleSending(subscriber);
+        }
+    }
+
+    private void dropBlockedSubscribers() {
+        long now = System.nanoTime();
+        for (Subscriber subscriber : subscribers) {
+            long startedAt = subscriber.writeStartedAt;
+            if (startedAt == 0 || now - startedAt < WRITE_TIMEOUT.toNanos()) continue;
+            log.info("Dropping SSE subscriber: write blocked for more than {}", WRITE_TIMEOUT);
+            close(subscriber);
+            addExtraSender(subscriber);
+        }
+    }
+
+    private void sendHeartbeats() {
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.queue.isEmpty() && !subscriber.sending.get()) {
+                enqueue(subscriber, HEARTBEAT);
+            }
+        }
+    }
+
+    /**
+     * Adds sender thread instead of one, blocked by subscriber. Does nothing, if write is already over
+     * or there are already {@link #MAX_EXTRA_SENDER_THREADS} extra threads.
+     */
+    private synchronized void addExtraSender(final Subscriber subscriber) {
+        if (subscriber.replaced || subscriber.writeStartedAt == 0) return;
+        if (extraSenders >= MAX_EXTRA_SENDER_THREADS) return;
+        subscriber.replaced = true;
+        extraSenders++;
+        //core size can never exceed max size
+        senders.setMaximumPoolSize(SENDER_THREADS + extraSenders);
+        senders.setCorePoolSize(SENDER_THREADS + extraSenders);
+    }
+
+    /**
+     * Removes extra sender thread, when blocked one is back.
+     */
+    private synchronized void releaseExtraSender(final Subscriber subscriber) {
+        if (!subscriber.replaced) return;
+        subscriber.replaced = false;
+        extraSenders--;
+        senders.setCorePoolSize(SENDER_THREADS + extraSenders);
+        senders.setMaximumPoolSize(SENDER_THREADS + extraSenders);
+    }
+
+    private static SseEmitter.SseEventBuilder toEvent(final Message message) {
+        if (message == HEARTBEAT) {
+            return SseEmitter.event().comment("heartbeat");
+        }
+        return SseEmitter.event()
+                .id(String.valueOf(message.id))
+                .name(EVENT_NAME)
+                .data(message.json, MediaType.APPLICATION_JSON);
+    }
+
+    @Value
+    private static class Message {
+        long id;
+        String json;
+    }
+
+    private static final class Subscriber {
+        private final String fileName;
+        private final SseEmitter emitter;
+        private final BlockingQueue<Message> queue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+        private final AtomicBoolean sending = new AtomicBoolean();
+        /**
+         * True, when sender thread, blocked by this subscriber, was replaced with extra one.
+         * Guarded by {@link ChangeBroadcaster} itself.
+         */
+        private boolean replaced;
+        /**
+         * {@link System#nanoTime()} of start of current write or 0, when nothing is being written.
+         */
+        private volatile long writeStartedAt;
+        private volatile boolean closed;
+
+        private Subscriber(final String fileName, final SseEmitter emitter) {
+            this.fileName = fileName;
+            this.emitter = emitter;
+        }
+
+        private boolean isInterestedIn(final RecordChangedEvent event) {
+            return fileName == null || fileName.equals(event.getFileName());
+        }
+    }
+}
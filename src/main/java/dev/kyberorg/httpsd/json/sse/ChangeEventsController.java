@@ -0,0 +1,44 @@
+package dev.kyberorg.httpsd.json.sse;
+
+import dev.kyberorg.httpsd.db.models.File;
+import dev.kyberorg.httpsd.events.RecordChangedEvent;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * Stream of {@link RecordChangedEvent}s as Server-Sent Events. Each event is named {@literal record}
+ * and has JSON like {@literal {"fileName":"targets","recordId":42,"action":"UPDATED"}} as data.
+ */
+@RequiredArgsConstructor
+@ResponseBody
+@Controller
+public class ChangeEventsController {
+    private final ChangeBroadcaster changeBroadcaster;
+
+    /**
+     * Subscribes to changes of all {@link File}s. Records without {@link File} are reported too:
+     * their events have no {@literal fileName}.
+     *
+     * @return {@link SseEmitter} with event stream.
+     */
+    @GetMapping(value = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter allEvents() {
+        return changeBroadcaster.subscribe(null);
+    }
+
+    /**
+     * Subscribes to changes of single {@link File}.
+     *
+     * @param file filename (without extension).
+     * @return {@link SseEmitter} with event stream.
+     */
+    @GetMapping(value = "/events/{file}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter fileEvents(@PathVariable String file) {
+        return changeBroadcaster.subscribe(file);
+    }
+}
@@ -0,0 +1,238 @@
+package dev.kyberorg.httpsd.registry;
+
+import dev.kyberorg.httpsd.db.models.File;
+import dev.kyberorg.httpsd.db.models.Record;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable in-memory model of Service Discovery content: {@link File}s and their {@link RegistryRecord}s.
+ * Only {@link Record.Status#ACTIVE} {@link Record}s are kept.
+ * <p>
+ * Objects of this class are never modified: every change produces new {@link Registry},
+ * sharing unchanged parts with previous one. So reader, that got {@link Registry} once,
+ * sees consistent content without any locks, even if writers change it meanwhile.
+ * <p>
+ * {@link StringDictionary} only grows: strings of changed and removed records stay there. Once it has grown
+ * {@link #COMPACTION_FACTOR} times since {@link Registry} was built or compacted, {@link #needsCompaction()}
+ * tells owner to replace {@link Registry} with {@link #compacted()} one, which has only live strings.
+ */
+public final class Registry {
+    private static final Comparator<RegistryRecord> BY_ID = Comparator.comparingLong(RegistryRecord::getId);
+    /**
+     * {@link StringDictionary} is compacted, when it has this many times more strings, than it had
+     * after {@link Registry} was built.
+     */
+    private static final int COMPACTION_FACTOR = 2;
+    /**
+     * Smaller {@link StringDictionary} is never compacted: garbage there costs less, than copying records.
+     */
+    private static final int MIN_COMPACTION_SIZE = 64 * 1024;
+
+    private final Map<String, List<RegistryRecord>> recordsByFile;
+    private final Map<Long, String> fileByRecordId;
+    /**
+     * {@link StringDictionary} of all {@link RegistryRecord}s. Shared by all versions of {@link Registry},
+     * that were derived from same one. Strings of removed records stay there until {@link Registry} is rebuilt
+     * or {@link #compacted()}.
+     */
+    @Getter private final StringDictionary dictionary;
+    /**
+     * Size of {@link #dictionary}, when {@link Registry} was built: then all its strings were used.
+     */
+    private final int builtDictionarySize;
+
+    private Registry(final Map<String, List<RegistryRecord>> recordsByFile, final Map<Long, String> fileByRecordId,
+                     final StringDictionary dictionary, final int builtDictionarySize) {
+        this.recordsByFile = recordsByFile;
+        this.fileByRecordId = fileByRecordId;
+        this.dictionary = dictionary;
+        this.builtDictionarySize = builtDictionarySize;
+    }
+
+    /**
+     * Creates {@link Registry} with given content at once.
+     *
+     * @param recordsByFile filename (without extension) to all {@link RegistryRecord}s of {@link File}.
+     * @param dictionary {@link StringDictionary}, records were created with.
+     * @return created {@link Registry}.
+     */
+    public static Registry of(final Map<String, List<RegistryRecord>> recordsByFile,
+                              final StringDictionary dictionary) {
+        Map<String, List<RegistryRecord>> newRecordsByFile = new HashMap<>();
+        Map<Long, String> newFileByRecordId = new HashMap<>();
+        recordsByFile.forEach((fileName, records) -> {
+            List<RegistryRecord> sorted = new ArrayList<>(records);
+            sorted.sort(BY_ID);
+            sorted.forEach(record -> newFileByRecordId.put(record.getId(), fileName));
+            newRecordsByFile.put(fileName, Collections.unmodifiableList(sorted));
+        });
+        return new Registry(newRecordsByFile, newFileByRecordId, dictionary, dictionary.size());
+    }
+
+    /**
+     * Provides names of all {@link File}s.
+     *
+     * @return {@link Set} of filenames (without extension). {@link Set} is not modifiable.
+     */
+    public Set<String> getFileNames() {
+        return Collections.unmodifiableSet(recordsByFile.keySet());
+    }
+
+    /**
+     * Defines, if {@link File} with given filename exists.
+     *
+     * @param fileName non-empty string with filename (without extension).
+     * @return true if {@link File} exists, false if not.
+     */
+    public boolean hasFile(final String fileName) {
+        return recordsByFile.containsKey(fileName);
+    }
+
+    /**
+     * Provides {@link RegistryRecord}s of {@link File}.
+     *
+     * @param fileName non-empty string with filename (without extension).
+     * @return {@link List} of {@link RegistryRecord}s ordered by id or empty {@link List}, if no such {@link File}.
+     * {@link List} is not modifiable.
+     */
+    public List<RegistryRecord> getRecords(final String fileName) {
+        return recordsByFile.getOrDefault(fileName, Collections.emptyList());
+    }
+
+    /**
+     * Provides {@link Registry} with given content of {@link File}. {@link File} is added, if it is not known yet.
+     *
+     * @param fileName non-empty string with filename (without extension).
+     * @param records all {@link RegistryRecord}s of {@link File}.
+     * @return new {@link Registry}.
+     */
+    public Registry withFile(final String fileName, final List<RegistryRecord> records) {
+        return withFiles(Map.of(fileName, records));
+    }
+
+    /**
+     * Provides {@link Registry} with given content of several {@link File}s. Same as {@link #withFile}
+     * for each of them, but {@link Registry} is copied once.
+     *
+     * @param files filename (without extension) to all {@link RegistryRecord}s of {@link File}.
+     * @return new {@link Registry}.
+     */
+    public Registry withFiles(final Map<String, List<RegistryRecord>> files) {
+        Map<String, List<RegistryRecord>> newRecordsByFile = new HashMap<>(recordsByFile);
+        Map<Long, String> newFileByRecordId = new HashMap<>(fileByRecordId);
+        files.forEach((fileName, records) -> {
+            List<RegistryRecord> current = newRecordsByFile.getOrDefault(fileName, Collections.emptyList());
+            current.forEach(record -> newFileByRecordId.remove(record.getId()));
+            //record could be moved here from other file, which wasn't reloaded yet
+            records.forEach(record -> removeRecord(record.getId(), newRecordsByFile, newFileByRecordId));
+            List<RegistryRecord> sorted = new ArrayList<>(records);
+            sorted.sort(BY_ID);
+            keepUnchanged(getRecords(fileName), sorted);
+            sorted.forEach(record -> newFileByRecordId.put(record.getId(), fileName));
+            newRecordsByFile.put(fileName, Collections.unmodifiableList(sorted));
+        });
+        return new Registry(newRecordsByFile, newFileByRecordId, dictionary, builtDictionarySize);
+    }
+
+    /**
+     * Provides {@link Registry}, where {@link RegistryRecord} is placed to given {@link File}
+     * and removed from {@link File} it was in before. Both {@link File}s change at once.
+     *
+     * @param fileName non-empty string with filename (without extension).
+     * @param record new or changed {@link RegistryRecord}.
+     * @return new {@link Registry}.
+     */
+    public Registry withRecord(final String fileName, final RegistryRecord record) {
+        Map<String, List<RegistryRecord>> newRecordsByFile = new HashMap<>(recordsByFile);
+        Map<Long, String> newFileByRecordId = new HashMap<>(fileByRecordId);
+        removeRecord(record.getId(), newRecordsByFile, newFileByRecordId);
+
+        //record is already removed from its file: position is where it belongs, not where it was
+        List<RegistryRecord> records = new ArrayList<>(
+                newRecordsByFile.getOrDefault(fileName, Collections.emptyList()));
+        int position = Collections.binarySearch(records, record, BY_ID);
+        records.add(-position - 1, record);
+        newRecordsByFile.put(fileName, Collections.unmodifiableList(records));
+        newFileByRecordId.put(record.getId(), fileName);
+        return new Registry(newRecordsByFile, newFileByRecordId, dictionary, builtDictionarySize);
+    }
+
+    /**
+     * Provides {@link Registry} without given {@link RegistryRecord}.
+     *
+     * @param recordId id of deleted or disabled {@link Record}.
+     * @return new {@link Registry} or this one, if there was no such {@link RegistryRecord}.
+     */
+    public Registry withoutRecord(final long recordId) {
+        if (!fileByRecordId.containsKey(recordId)) return this;
+        Map<String, List<RegistryRecord>> newRecordsByFile = new HashMap<>(recordsByFile);
+        Map<Long, String> newFileByRecordId = new HashMap<>(fileByRecordId);
+        removeRecord(recordId, newRecordsByFile, newFileByRecordId);
+        return new Registry(newRecordsByFile, newFileByRecordId, dictionary, builtDictionarySize);
+    }
+
+    /**
+     * Defines, if {@link StringDictionary} holds so many strings of removed and changed records,
+     * that {@link #compacted()} {@link Registry} should replace this one.
+     *
+     * @return true if {@link StringDictionary} has grown {@link #COMPACTION_FACTOR} times since {@link Registry}
+     * was built, false if not.
+     */
+    public boolean needsCompaction() {
+        int size = dictionary.size();
+        return size >= MIN_COMPACTION_SIZE && size > (long) builtDictionarySize * COMPACTION_FACTOR;
+    }
+
+    /**
+     * Provides {@link Registry} with same content, which records are encoded in new {@link StringDictionary}
+     * with only strings, that are in use. Database is not read. All {@link RegistryRecord}s are new instances,
+     * so next snapshot of every {@link File} renders all its records instead of copying them from previous one.
+     *
+     * @return new {@link Registry}.
+     */
+    public Registry compacted() {
+        StringDictionary compactDictionary = new StringDictionary();
+        Map<String, List<RegistryRecord>> newRecordsByFile = new HashMap<>();
+        recordsByFile.forEach((fileName, records) -> {
+            List<RegistryRecord> reencoded = new ArrayList<>(records.size());
+            records.forEach(record -> reencoded.add(RegistryRecord.of(record.getId(), record.toStaticConfig(),
+                    compactDictionary)));
+            newRecordsByFile.put(fileName, Collections.unmodifiableList(reencoded));
+        });
+        return new Registry(newRecordsByFile, new HashMap<>(fileByRecordId), compactDictionary,
+                compactDictionary.size());
+    }
+
+    /**
+     * Replaces reloaded records, which didn't change, with previous instances, so their JSON
+     * is copied from previous snapshot instead of being rendered again. Both lists are sorted by id.
+     */
+    private static void keepUnchanged(final List<RegistryRecord> previous, final List<RegistryRecord> reloaded) {
+        int i = 0;
+        for (int j = 0; j < reloaded.size() && i < previous.size(); j++) {
+            RegistryRecord record = reloaded.get(j);
+            while (i < previous.size() && previous.get(i).getId() < record.getId()) i++;
+            if (i < previous.size() && previous.get(i).hasSameContent(record)) {
+                reloaded.set(j, previous.get(i));
+            }
+        }
+    }
+
+    private static void removeRecord(final long recordId, final Map<String, List<RegistryRecord>> recordsByFile,
+                                     final Map<Long, String> fileByRecordId) {
+        String previousFile = fileByRecordId.remove(recordId);
+        if (previousFile == null) return;
+        List<RegistryRecord> records = new ArrayList<>(recordsByFile.get(previousFile));
+        records.removeIf(record -> record.getId() == recordId);
+        recordsByFile.put(previousFile, Collections.unmodifiableList(records));
+    }
+}
@@ -0,0 +1,115 @@
+package dev.kyberorg.httpsd.registry;
+
+import dev.kyberorg.httpsd.db.models.Record;
+import dev.kyberorg.httpsd.json.StaticConfig;
+import lombok.Getter;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Immutable copy of {@link Record.Status#ACTIVE} {@link Record}: its targets and labels.
+ * Unlike {@link Record} entity it is not bound to any session and can be shared between threads.
+ * <p>
+ * Strings are not stored in record itself: targets, label keys and label values are ids
+ * in {@link StringDictionary}, kept in primitive arrays. So every target costs 4 bytes plus
+ * its single shared copy in dictionary, and labels can be compared as integers.
+ */
+public final class RegistryRecord {
+    /**
+     * Id of {@link Record}.
+     */
+    @Getter private final long id;
+    private final StringDictionary dictionary;
+    private final int[] targets;
+    /**
+     * Label key and label value ids one after another: {@literal [key0, value0, key1, value1, ...]}.
+     */
+    private final int[] labels;
+
+    private RegistryRecord(final long id, final StringDictionary dictionary,
+                           final int[] targets, final int[] labels) {
+        this.id = id;
+        this.dictionary = dictionary;
+        this.targets = targets;
+        this.labels = labels;
+    }
+
+    /**
+     * Creates {@link RegistryRecord} from {@link StaticConfig}. Given object is not referenced after.
+     *
+     * @param id {@link Record}'s id.
+     * @param staticConfig {@link StaticConfig} with targets and labels of {@link Record}.
+     * @param dictionary {@link StringDictionary} to intern strings to.
+     * @return created {@link RegistryRecord}.
+     */
+    public static RegistryRecord of(final long id, final StaticConfig staticConfig,
+                                    final StringDictionary dictionary) {
+        int[] targets = staticConfig.getTargets().stream().mapToInt(dictionary::intern).toArray();
+        int[] labels = new int[staticConfig.getLabels().size() * 2];
+        int position = 0;
+        for (Map.Entry<String, String> label : staticConfig.getLabels().entrySet()) {
+            labels[position++] = dictionary.intern(label.getKey());
+            labels[position++] = dictionary.intern(label.getValue());
+        }
+        return new RegistryRecord(id, dictionary, targets, labels);
+    }
+
+    /**
+     * Passes labels to consumer one by one. Strings are shared instances from {@link StringDictionary},
+     * nothing is copied.
+     *
+     * @param consumer action to perform with key and value of each label.
+     */
+    public void forEachLabel(final BiConsumer<String, String> consumer) {
+        for (int i = 0; i < labels.length; i += 2) {
+            consumer.accept(dictionary.lookup(labels[i]), dictionary.lookup(labels[i + 1]));
+        }
+    }
+
+    /**
+     * Defines, if other record has same id, targets and labels. Such record can be used instead of this one.
+     *
+     * Records from same {@link StringDictionary} are compared by ids, records from different ones
+     * (e.g. before and after {@link Registry#compacted()}) by strings.
+     *
+     * @param other other {@link RegistryRecord}.
+     * @return true if records have same content, false if not.
+     */
+    public boolean hasSameContent(final RegistryRecord other) {
+        if (id != other.id || targets.length != other.targets.length || labels.length != other.labels.length) {
+            return false;
+        }
+        if (dictionary == other.dictionary) {
+            return Arrays.equals(targets, other.targets) && Arrays.equals(labels, other.labels);
+        }
+        return sameStrings(targets, other, other.targets) && sameStrings(labels, other, other.labels);
+    }
+
+    /**
+     * Creates new (mutable) {@link StaticConfig} with same targets and labels.
+     *
+     * @return created {@link StaticConfig}.
+     */
+    public StaticConfig toStaticConfig() {
+        StaticConfig staticConfig = new StaticConfig();
+        for (int target : targets) {
+            staticConfig.getTargets().add(dictionary.lookup(target));
+        }
+        Map<String, String> labelMap = new LinkedHashMap<>();
+        for (int i = 0; i < labels.length; i += 2) {
+            labelMap.put(dictionary.lookup(labels[i]), dictionary.lookup(labels[i + 1]));
+        }
+        staticConfig.setLabels(labelMap);
+        return staticConfig;
+    }
+
+    private boolean sameStrings(final int[] ids, final RegistryRecord other, final int[] otherIds) {
+        for (int i = 0; i < ids.length; i++) {
+            if (!dictionary.lookup(ids[i]).equals(other.dictionary.lookup(otherIds[i]))) return false;
+        }
+        return true;
+    }
+}
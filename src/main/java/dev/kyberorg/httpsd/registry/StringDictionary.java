@@ -0,0 +1,94 @@
+package dev.kyberorg.httpsd.registry;
+
+import java.util.Arrays;
+
+/**
+ * Append-only dictionary, that maps strings (label keys, label values, targets) to dense integer ids.
+ * Every distinct string is stored once, no matter how many {@link RegistryRecord}s use it.
+ * <p>
+ * Lookup table is open-addressing array of ints, so dictionary has no per-entry objects
+ * (no map nodes, no boxed integers). Ids are never reused or changed, so any {@link Registry} version
+ * can share same dictionary. Writes are synchronized, {@link #lookup(int)} is lock-free.
+ */
+public final class StringDictionary {
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int EMPTY_SLOT = -1;
+
+    private volatile String[] values = new String[INITIAL_CAPACITY];
+    private int[] table = newTable(INITIAL_CAPACITY * 2);
+    private volatile int size;
+
+    /**
+     * Provides id of string, adding string to dictionary if it is not there yet.
+     *
+     * @param value non-null string.
+     * @return id of string.
+     */
+    public synchronized int intern(final String value) {
+        int slot = findSlot(table, value);
+        if (table[slot] != EMPTY_SLOT) return table[slot];
+
+        int id = size;
+        if (id == values.length) {
+            values = Arrays.copyOf(values, id * 2);
+        }
+        values[id] = value;
+        table[slot] = id;
+        //size is volatile: lookup(id) sees the value written above
+        size = id + 1;
+        if (size * 2 > table.length) {
+            rehash();
+        }
+        return id;
+    }
+
+    /**
+     * Provides string by its id.
+     *
+     * @param id id, that was returned by {@link #intern(String)}.
+     * @return string with given id.
+     * @throws IndexOutOfBoundsException if id is unknown.
+     */
+    public String lookup(final int id) {
+        if (id < 0 || id >= size) throw new IndexOutOfBoundsException("Unknown id: " + id);
+        return values[id];
+    }
+
+    /**
+     * Amount of distinct strings in dictionary.
+     *
+     * @return amount of strings.
+     */
+    public int size() {
+        return size;
+    }
+
+    private int findSlot(final int[] lookupTable, final String value) {
+        int mask = lookupTable.length - 1;
+        int slot = mix(value.hashCode()) & mask;
+        while (lookupTable[slot] != EMPTY_SLOT && !values[lookupTable[slot]].equals(value)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void rehash() {
+        int[] newTable = newTable(table.length * 2);
+        for (int id = 0; id < size; id++) {
+            newTable[findSlot(newTable, values[id])] = id;
+        }
+        table = newTable;
+    }
+
+    private static int[] newTable(final int capacity) {
+        int[] newTable = new int[capacity];
+        Arrays.fill(newTable, EMPTY_SLOT);
+        return newTable;
+    }
+
+    private static int mix(final int hash) {
+        //spreads bits of poor hashes (like sequential host names) over whole table
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,306 @@
+package dev.kyberorg.httpsd.search;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.LongStream;
+
+/**
+ * Case-insensitive substring index over short texts, grouped into documents with numeric ids.
+ * <p>
+ * Every text is split into trigrams (three consecutive characters), one starting at every character:
+ * trigrams at the end of text are padded with {@link #PAD}, so texts shorter than trigram are indexed too.
+ * Trigrams are kept in sorted array of keys, every key has posting list: sorted array of ids of documents,
+ * which texts contain it. Query is answered by intersecting posting lists of its trigrams, starting from
+ * shortest one, and checking remaining candidates only. Queries shorter than trigram are prefixes
+ * of trigrams starting at same character, so they are answered by merging posting lists of continuous
+ * range of keys, without checking any text.
+ * Documents can be added, replaced and removed one by one. Adding documents in ascending order of ids
+ * only appends to posting lists.
+ * <p>
+ * Index is thread-safe: queries run concurrently, updates are exclusive. Every update bumps {@link #getVersion()},
+ * so results of queries can be cached while version stays same.
+ */
+public final class TrigramIndex {
+    private static final int GRAM = 3;
+    private static final char PAD = '\0';
+    private static final int INITIAL_CAPACITY = 4;
+
+    private final Map<Long, String[]> documents = new HashMap<>();
+    /**
+     * Sorted trigram keys and, at same positions, their posting lists. Only first {@link #keyCount} are used.
+     */
+    private long[] keys = new long[INITIAL_CAPACITY];
+    private PostingList[] postings = new PostingList[INITIAL_CAPACITY];
+    private int keyCount;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile long version;
+
+    /**
+     * Adds document or replaces existing document with same id.
+     *
+     * @param id document id.
+     * @param texts texts of document. {@code null} and empty texts are skipped.
+     */
+    public void put(final long id, final Collection<String> texts) {
+        String[] normalized = texts.stream()
+                .filter(text -> text != null && !text.isEmpty())
+                .map(TrigramIndex::normalize)
+                .distinct()
+                .toArray(String[]::new);
+        lock.writeLock().lock();
+        try {
+            removeUnlocked(id);
+            documents.put(id, normalized);
+            for (long trigram : paddedTrigramsOf(normalized)) {
+                int position = Arrays.binarySearch(keys, 0, keyCount, trigram);
+                if (position < 0) {
+                    position = -position - 1;
+                    insertKey(position, trigram);
+                }
+                postings[position].add(id);
+            }
+            version++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes document. Does nothing, if there is no document with given id.
+     *
+     * @param id document id.
+     */
+    public void remove(final long id) {
+        lock.writeLock().lock();
+        try {
+            removeUnlocked(id);
+            version++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Finds documents, which have at least one text containing given query (case-insensitive).
+     *
+     * @param query string to search for. Empty query finds all documents.
+     * @return ids of found documents in ascending order.
+     */
+    public long[] search(final String query) {
+        String needle = normalize(query);
+        lock.readLock().lock();
+        try {
+            if (needle.isEmpty()) {
+                return documents.keySet().stream().mapToLong(Long::longValue).sorted().toArray();
+            }
+            if (needle.length() < GRAM) return searchPrefix(needle);
+            return LongStream.of(intersectPostings(needle))
+                    .filter(id -> containsText(documents.get(id), needle))
+                    .toArray();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Provides version of index. It grows with every added, replaced or removed document.
+     *
+     * @return current version.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Amount of indexed documents.
+     *
+     * @return amount of documents.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Merges posting lists of all trigrams, that start with needle: they are continuous range of sorted keys.
+     */
+    private long[] searchPrefix(final String needle) {
+        long from = (long) needle.charAt(0) << 32;
+        long to = from + (1L << 32);
+        if (needle.length() == 2) {
+            from |= (long) needle.charAt(1) << 16;
+            to = from + (1L << 16);
+        }
+        int start = insertionPoint(from);
+        int end = insertionPoint(to);
+        if (start == end) return new long[0];
+        if (end - start == 1) return postings[start].toArray();
+        int total = 0;
+        for (int i = start; i < end; i++) {
+            total += postings[i].size;
+        }
+        long[] merged = new long[total];
+        int position = 0;
+        for (int i = start; i < end; i++) {
+            System.arraycopy(postings[i].ids, 0, merged, position, postings[i].size);
+            position += postings[i].size;
+        }
+        return LongStream.of(merged).sorted().distinct().toArray();
+    }
+
+    private long[] intersectPostings(final String needle) {
+        long[] trigrams = trigramsOf(needle);
+        PostingList[] lists = new PostingList[trigrams.length];
+        for (int i = 0; i < trigrams.length; i++) {
+            int position = Arrays.binarySearch(keys, 0, keyCount, trigrams[i]);
+            if (position < 0) return new long[0];
+            lists[i] = postings[position];
+        }
+        Arrays.sort(lists, (first, second) -> Integer.compare(first.size, second.size));
+        long[] result = lists[0].toArray();
+        int size = result.length;
+        for (int i = 1; i < lists.length && size > 0; i++) {
+            int kept = 0;
+            for (int j = 0; j < size; j++) {
+                if (lists[i].contains(result[j])) {
+                    result[kept++] = result[j];
+                }
+            }
+            size = kept;
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    private void removeUnlocked(final long id) {
+        String[] texts = documents.remove(id);
+        if (texts == null) return;
+        for (long trigram : paddedTrigramsOf(texts)) {
+            int position = Arrays.binarySearch(keys, 0, keyCount, trigram);
+            if (position >= 0 && postings[position].remove(id) && postings[position].size == 0) {
+                removeKey(position);
+            }
+        }
+    }
+
+    private void insertKey(final int position, final long trigram) {
+        if (keyCount == keys.length) {
+            keys = Arrays.copyOf(keys, keyCount * 2);
+            postings = Arrays.copyOf(postings, keyCount * 2);
+        }
+        System.arraycopy(keys, position, keys, position + 1, keyCount - position);
+        System.arraycopy(postings, position, postings, position + 1, keyCount - position);
+        keys[position] = trigram;
+        postings[position] = new PostingList();
+        keyCount++;
+    }
+
+    private void removeKey(final int position) {
+        System.arraycopy(keys, position + 1, keys, position, keyCount - position - 1);
+        System.arraycopy(postings, position + 1, postings, position, keyCount - position - 1);
+        keyCount--;
+        postings[keyCount] = null;
+    }
+
+    /**
+     * Position of first key, that is not less than given one.
+     */
+    private int insertionPoint(final long key) {
+        int position = Arrays.binarySearch(keys, 0, keyCount, key);
+        return position >= 0 ? position : -position - 1;
+    }
+
+    /**
+     * Trigrams starting at every character of texts, padded at the end. Sorted and distinct.
+     */
+    private static long[] paddedTrigramsOf(final String[] texts) {
+        LongStream.Builder trigrams = LongStream.builder();
+        for (String text : texts) {
+            for (int i = 0; i < text.length(); i++) {
+                trigrams.add(trigram(text.charAt(i),
+                        i + 1 < text.length() ? text.charAt(i + 1) : PAD,
+                        i + 2 < text.length() ? text.charAt(i + 2) : PAD));
+            }
+        }
+        return trigrams.build().sorted().distinct().toArray();
+    }
+
+    private static long[] trigramsOf(final String text) {
+        LongStream.Builder trigrams = LongStream.builder();
+        for (int i = 0; i + GRAM <= text.length(); i++) {
+            trigrams.add(trigram(text.charAt(i), text.charAt(i + 1), text.charAt(i + 2)));
+        }
+        return trigrams.build().distinct().toArray();
+    }
+
+    private static long trigram(final char first, final char second, final char third) {
+        //three UTF-16 chars fit into single long, first char is most significant: prefixes are key ranges
+        return ((long) first << 32) | ((long) second << 16) | third;
+    }
+
+    private static boolean containsText(final String[] texts, final String needle) {
+        if (texts == null) return false;
+        for (String text : texts) {
+            if (text.contains(needle)) return true;
+        }
+        return false;
+    }
+
+    private static String normalize(final String text) {
+        return text.toLowerCase(Locale.ENGLISH);
+    }
+
+    /**
+     * Sorted ids of documents. Only first {@link #size} are used.
+     */
+    private static final class PostingList {
+        private long[] ids = new long[INITIAL_CAPACITY];
+        private int size;
+
+        private void add(final long id) {
+            //documents are mostly added in ascending order of ids
+            if (size == 0 || ids[size - 1] < id) {
+                ensureCapacity();
+                ids[size++] = id;
+                return;
+            }
+            int position = Arrays.binarySearch(ids, 0, size, id);
+            if (position >= 0) return;
+            position = -position - 1;
+            ensureCapacity();
+            System.arraycopy(ids, position, ids, position + 1, size - position);
+            ids[position] = id;
+            size++;
+        }
+
+        private boolean remove(final long id) {
+            int position = Arrays.binarySearch(ids, 0, size, id);
+            if (position < 0) return false;
+            System.arraycopy(ids, position + 1, ids, position, size - position - 1);
+            size--;
+            return true;
+        }
+
+        private boolean contains(final long id) {
+            return Arrays.binarySearch(ids, 0, size, id) >= 0;
+        }
+
+        private long[] toArray() {
+            return Arrays.copyOf(ids, size);
+        }
+
+        private void ensureCapacity() {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+        }
+    }
+}
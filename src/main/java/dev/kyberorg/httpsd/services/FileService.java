@@ -2,8 +2,10 @@ package dev.kyberorg.httpsd.services;
 
 import dev.kyberorg.httpsd.db.dao.FileDao;
 import dev.kyberorg.httpsd.db.models.File;
+import dev.kyberorg.httpsd.events.FileChangedEvent;
 import org.apache.commons.collections4.IterableUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import java.util.Collection;
@@ -18,6 +20,7 @@ public class FileService {
     private static FileService self;
 
     private final FileDao fileDao;
+    private final ApplicationEventPublisher eventPublisher;
 
     /**
      * Provides {@link FileService} to non-Spring objects.
@@ -32,9 +35,11 @@ public class FileService {
      * Creates {@link FileService}. Should be called by Spring itself, not intended to use directly.
      *
      * @param fileDao {@link FileDao} implementation.
+     * @param eventPublisher publisher for {@link FileChangedEvent}s.
      */
-    public FileService(final FileDao fileDao) {
+    public FileService(final FileDao fileDao, final ApplicationEventPublisher eventPublisher) {
         this.fileDao = fileDao;
+        this.eventPublisher = eventPublisher;
         self = this;
     }
 
@@ -80,7 +85,7 @@ public class FileService {
     }
 
     /**
-     * Creates new {@link File} and saves it to Database.
+     * Creates new {@link File} and saves it to Database. Publishes {@link FileChangedEvent} for created {@link File}.
      *
      * @param fileName non-empty string with filename.
      */
@@ -89,5 +94,6 @@ public class FileService {
         File file = new File();
         file.setFileName(fileName.trim());
         fileDao.save(file);
+        eventPublisher.publishEvent(new FileChangedEvent(file.getFileName()));
     }
 }
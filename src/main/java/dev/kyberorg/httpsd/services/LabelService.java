@@ -6,14 +6,19 @@ import dev.kyberorg.httpsd.db.dao.LabelValueDao;
 import dev.kyberorg.httpsd.db.models.Label;
 import dev.kyberorg.httpsd.db.models.LabelKey;
 import dev.kyberorg.httpsd.db.models.LabelValue;
+import dev.kyberorg.httpsd.events.BulkChangeEvent;
+import dev.kyberorg.httpsd.events.LabelChangedEvent;
 import org.apache.commons.collections4.IterableUtils;
 import org.apache.commons.compress.utils.Lists;
 import org.apache.commons.lang3.StringUtils;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
@@ -27,6 +32,7 @@ public class LabelService {
     private final LabelKeyDao labelKeyDao;
     private final LabelValueDao labelValueDao;
     private final LabelDao labelDao;
+    private final ApplicationEventPublisher eventPublisher;
 
     /**
      * Provides {@link LabelService} to non-Spring objects.
@@ -43,11 +49,14 @@ public class LabelService {
      * @param labelKeyDao {@link LabelKeyDao} implementation.
      * @param labelValueDao {@link LabelValueDao} implementation.
      * @param labelDao {@link LabelDao} implementation.
+     * @param eventPublisher publisher for {@link BulkChangeEvent}s and {@link LabelChangedEvent}s.
      */
-    public LabelService(final LabelKeyDao labelKeyDao, final LabelValueDao labelValueDao, final LabelDao labelDao) {
+    public LabelService(final LabelKeyDao labelKeyDao, final LabelValueDao labelValueDao, final LabelDao labelDao,
+                        final ApplicationEventPublisher eventPublisher) {
         this.labelKeyDao = labelKeyDao;
         this.labelValueDao = labelValueDao;
         this.labelDao = labelDao;
+        this.eventPublisher = eventPublisher;
 
         self = this;
     }
@@ -146,6 +155,16 @@ public class LabelService {
         return labelDao.findByLabelKeyAndLabelValue(labelKey, labelValue);
     }
 
+    /**
+     * Provides ids of {@link dev.kyberorg.httpsd.db.models.Record}s, that use given {@link Label}.
+     *
+     * @param labelId {@link Label}'s id.
+     * @return {@link List} of record ids or empty {@link List}.
+     */
+    public List<Long> getRecordIdsByLabelId(final long labelId) {
+        return labelDao.findRecordIdsByLabelId(labelId);
+    }
+
     /**
      * Creates new {@link LabelKey} and saves it to Database.
      *
@@ -174,12 +193,23 @@ public class LabelService {
 
     /**
      * Creates new {@link Label} and saves it to Database.
+     * When existing {@link Label} updated, publishes {@link LabelChangedEvent}
+     * and {@link BulkChangeEvent} with all files, that use it, so they are reloaded and re-rendered in parallel.
      *
      * @param label non-empty {@link Label} object.
      * @throws IllegalStateException when provided {@link Label} object is {@code null}.
      */
     public Label saveLabel(final Label label) {
         if (label == null) throw new IllegalArgumentException("Label cannot be null");
-        return labelDao.save(label);
+        boolean existingLabel = !label.isNewLabel();
+        Label savedLabel = labelDao.save(label);
+        if (existingLabel) {
+            eventPublisher.publishEvent(new LabelChangedEvent(savedLabel.getId()));
+            Set<String> fileNames = new HashSet<>(labelDao.findFileNamesByLabelId(savedLabel.getId()));
+            if (!fileNames.isEmpty()) {
+                eventPublisher.publishEvent(new BulkChangeEvent(fileNames));
+            }
+        }
+        return savedLabel;
     }
 }
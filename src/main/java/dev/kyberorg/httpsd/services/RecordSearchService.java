@@ -0,0 +1,243 @@
+package dev.kyberorg.httpsd.services;
+
+import dev.kyberorg.httpsd.db.models.Label;
+import dev.kyberorg.httpsd.db.models.Record;
+import dev.kyberorg.httpsd.db.models.Target;
+import dev.kyberorg.httpsd.db.specifications.RecordSpecifications;
+import dev.kyberorg.httpsd.events.LabelChangedEvent;
+import dev.kyberorg.httpsd.events.RecordChangedEvent;
+import dev.kyberorg.httpsd.search.TrigramIndex;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Service, that searches {@link Record}s by substring of their name, filename, {@link Target}s
+ * and {@link Label}s (key, value or {@literal key=value}).
+ * <p>
+ * Texts are kept in {@link TrigramIndex}, so search costs few posting list lookups instead of scanning
+ * all {@link Record}s. Index is built from database at first search and then updated record by record
+ * on every {@link RecordChangedEvent} and {@link LabelChangedEvent}, before other listeners see the change.
+ * <p>
+ * Found ids are cached per filter text and version of index, so count and pages of same filter
+ * search index once. Unsorted pages are cut from found ids right here: database loads only ids of page.
+ * Sorted pages are sorted and cut by database, with found ids passed as {@literal IN} lists.
+ */
+@Slf4j
+@Service
+public class RecordSearchService {
+    /**
+     * Max amount of filter texts, which found ids are cached.
+     */
+    private static final int MAX_CACHED_MATCHES = 64;
+
+    private static RecordSearchService self;
+
+    private final RecordService recordService;
+    private final LabelService labelService;
+
+    private final AtomicReference<TrigramIndex> index = new AtomicReference<>();
+    private final Object writeLock = new Object();
+    private final Map<String, Match> matches = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, Match> eldest) {
+            return size() > MAX_CACHED_MATCHES;
+        }
+    });
+
+    /**
+     * Provides {@link RecordSearchService} to non-Spring objects.
+     *
+     * @return this {@link RecordSearchService}.
+     */
+    public static RecordSearchService get() {
+        return self;
+    }
+
+    /**
+     * Creates {@link RecordSearchService}. Should be called by Spring itself, not intended to use directly.
+     *
+     * @param recordService service to read {@link Record}s from.
+     * @param labelService service to find {@link Record}s with changed {@link Label}.
+     */
+    public RecordSearchService(final RecordService recordService, final LabelService labelService) {
+        this.recordService = recordService;
+        this.labelService = labelService;
+        self = this;
+    }
+
+    /**
+     * Gets one page of {@link Record}s, which text or status contains given text.
+     * Matching is done by {@link TrigramIndex}, sorting - by database.
+     *
+     * @param filterText text to search for. Blank text selects all {@link Record}s.
+     * @param pageable page to load and its sort order.
+     * @return {@link List} of {@link Record}s on requested page.
+     */
+    public List<Record> findRecords(final String filterText, final Pageable pageable) {
+        if (StringUtils.isBlank(filterText)) return recordService.findRecords(null, pageable);
+        long[] ids = match(filterText).getIds();
+        if (pageable.isPaged() && pageable.getSort().isUnsorted() && !matchesStatus(filterText)) {
+            int from = (int) Math.min(ids.length, pageable.getOffset());
+            int to = (int) Math.min(ids.length, from + (long) pageable.getPageSize());
+            List<Long> pageIds = Arrays.stream(ids, from, to).boxed().toList();
+            return recordService.findRecords(RecordSpecifications.idIn(pageIds), Pageable.unpaged()).stream()
+                    .sorted(Comparator.comparing(Record::getId))
+                    .toList();
+        }
+        return recordService.findRecords(toSpecification(filterText, ids), pageable);
+    }
+
+    /**
+     * Counts {@link Record}s, which text or status contains given text.
+     * Unless text matches status, amount is taken from {@link TrigramIndex} without database query.
+     *
+     * @param filterText text to search for. Blank text counts all {@link Record}s.
+     * @return amount of matching {@link Record}s.
+     */
+    public long countRecords(final String filterText) {
+        if (StringUtils.isBlank(filterText)) return recordService.countRecords(null);
+        long[] ids = match(filterText).getIds();
+        if (!matchesStatus(filterText)) return ids.length;
+        return recordService.countRecords(toSpecification(filterText, ids));
+    }
+
+    /**
+     * Re-indexes changed {@link Record} or removes deleted one.
+     *
+     * @param event {@link RecordChangedEvent} with changed {@link Record}.
+     */
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @EventListener
+    public void onRecordChanged(final RecordChangedEvent event) {
+        reindex(List.of(event.getRecordId()));
+    }
+
+    /**
+     * Re-indexes all {@link Record}s, that use changed {@link Label}.
+     *
+     * @param event {@link LabelChangedEvent} with changed {@link Label}.
+     */
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @EventListener
+    public void onLabelChanged(final LabelChangedEvent event) {
+        if (index.get() == null) return;
+        reindex(labelService.getRecordIdsByLabelId(event.getLabelId()));
+    }
+
+    private Match match(final String filterText) {
+        String text = filterText.trim();
+        TrigramIndex current = getIndex();
+        Match cached = matches.get(text);
+        if (cached != null && cached.getIndex() == current && cached.getVersion() == current.getVersion()) {
+            return cached;
+        }
+        //version is taken before search: change in between only makes next call search again
+        long version = current.getVersion();
+        long[] ids = current.search(text);
+        Match match = new Match(current, version, ids);
+        matches.put(text, match);
+        return match;
+    }
+
+    private static Specification<Record> toSpecification(final String filterText, final long[] ids) {
+        List<Long> idList = Arrays.stream(ids).boxed().toList();
+        return RecordSpecifications.idIn(idList).or(RecordSpecifications.statusContains(filterText));
+    }
+
+    private static boolean matchesStatus(final String filterText) {
+        String text = filterText.trim().toLowerCase(Locale.ENGLISH);
+        return Arrays.stream(Record.Status.values())
+                .anyMatch(status -> status.name().toLowerCase(Locale.ENGLISH).contains(text));
+    }
+
+    private TrigramIndex getIndex() {
+        TrigramIndex current = index.get();
+        if (current != null) return current;
+        synchronized (writeLock) {
+            current = index.get();
+            if (current == null) {
+                current = build();
+                index.set(current);
+                matches.clear();
+            }
+            return current;
+        }
+    }
+
+    private void reindex(final List<Long> recordIds) {
+        synchronized (writeLock) {
+            TrigramIndex current = index.get();
+            if (current == null) return;
+            try {
+                for (Long recordId : recordIds) {
+                    Optional<Record> record = recordService.getRecordById(recordId);
+                    if (record.isPresent()) {
+                        current.put(recordId, textsOf(record.get()));
+                    } else {
+                        current.remove(recordId);
+                    }
+                }
+            } catch (RuntimeException e) {
+                log.warn("Failed to update search index, it will be rebuilt: {}", e.getMessage());
+                index.set(null);
+                matches.clear();
+            }
+        }
+    }
+
+    private TrigramIndex build() {
+        long start = System.currentTimeMillis();
+        //ascending ids: posting lists of index are only appended to
+        Map<Long, List<String>> texts = new TreeMap<>();
+        recordService.forEachRecordText((recordId, text) ->
+                texts.computeIfAbsent(recordId, id -> new ArrayList<>()).add(text));
+        TrigramIndex built = new TrigramIndex();
+        texts.forEach(built::put);
+        log.info("Search index with {} records built in {} ms", built.size(), System.currentTimeMillis() - start);
+        return built;
+    }
+
+    private static List<String> textsOf(final Record record) {
+        List<String> texts = new ArrayList<>();
+        texts.add(record.getName());
+        if (record.getFile() != null) {
+            texts.add(record.getFile().getFileName());
+        }
+        record.getTargets().forEach(target -> texts.add(target.getValue()));
+        for (Label label : record.getLabels()) {
+            texts.add(label.getLabelKey().getValue());
+            texts.add(label.getLabelValue().getValue());
+            texts.add(label.getLabelKey().getValue() + "=" + label.getLabelValue().getValue());
+        }
+        return texts;
+    }
+
+    /**
+     * Sorted ids of {@link Record}s, found by some filter text in given version of {@link TrigramIndex}.
+     */
+    @Value
+    private static class Match {
+        TrigramIndex index;
+        long version;
+        long[] ids;
+    }
+}
@@ -3,23 +3,43 @@ package dev.kyberorg.httpsd.services;
 import dev.kyberorg.httpsd.db.dao.RecordDao;
 import dev.kyberorg.httpsd.db.models.File;
 import dev.kyberorg.httpsd.db.models.Record;
+import dev.kyberorg.httpsd.db.projections.RecordLabelRow;
+import dev.kyberorg.httpsd.db.projections.RecordNameRow;
+import dev.kyberorg.httpsd.db.projections.RecordTargetRow;
+import dev.kyberorg.httpsd.events.FileChangedEvent;
+import dev.kyberorg.httpsd.events.RecordChangedEvent;
+import dev.kyberorg.httpsd.json.StaticConfig;
 import org.apache.commons.collections4.IterableUtils;
+import org.apache.commons.collections4.ListUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * Service, for {@link Record}-related operations.
  */
 @Service
 public class RecordService {
+    private static final int MAX_IDS_PER_QUERY = 1000;
+
     private static RecordService self;
 
     private final RecordDao recordDao;
+    private final ApplicationEventPublisher eventPublisher;
 
     /**
      * Provides {@link RecordService} to non-Spring objects.
@@ -34,9 +54,11 @@ public class RecordService {
      * Creates {@link RecordService}. Should be called by Spring itself, not intended to use directly.
      *
      * @param recordDao {@link RecordDao} implementation.
+     * @param eventPublisher publisher for {@link FileChangedEvent}s and {@link RecordChangedEvent}s.
      */
-    public RecordService(final RecordDao recordDao) {
+    public RecordService(final RecordDao recordDao, final ApplicationEventPublisher eventPublisher) {
         this.recordDao = recordDao;
+        this.eventPublisher = eventPublisher;
         self = this;
     }
 
@@ -85,6 +107,21 @@ public class RecordService {
         return recordDao.findById(recordId);
     }
 
+    /**
+     * Get {@link Record}s by their ids. Targets and labels are fetched by same query,
+     * one query per {@value #MAX_IDS_PER_QUERY} ids.
+     *
+     * @param recordIds ids of {@link Record}s. Ids of not existing {@link Record}s are skipped.
+     * @return {@link List} with found {@link Record}s in no particular order.
+     */
+    public List<Record> getRecordsByIds(final Collection<Long> recordIds) {
+        List<Record> found = new ArrayList<>(recordIds.size());
+        for (List<Long> chunk : ListUtils.partition(new ArrayList<>(recordIds), MAX_IDS_PER_QUERY)) {
+            found.addAll(recordDao.findWithTargetsAndLabelsByIdIn(chunk));
+        }
+        return found;
+    }
+
     /**
      * Get all {@link Record}s from Database.
      *
@@ -94,6 +131,55 @@ public class RecordService {
         return IterableUtils.toList(recordDao.findAll());
     }
 
+    /**
+     * Gets one page of {@link Record}s, which match given {@link Specification}.
+     * Filtering, sorting and paging are done by database, so only requested {@link Record}s are loaded.
+     *
+     * @param specification {@link Specification} to select {@link Record}s or {@code null} to select all.
+     * @param pageable page to load and its sort order.
+     * @return {@link List} of {@link Record}s on requested page.
+     */
+    public List<Record> findRecords(final Specification<Record> specification, final Pageable pageable) {
+        return recordDao.findAll(specification, pageable).getContent();
+    }
+
+    /**
+     * Counts {@link Record}s, which match given {@link Specification}.
+     *
+     * @param specification {@link Specification} to select {@link Record}s or {@code null} to count all.
+     * @return amount of matching {@link Record}s.
+     */
+    public long countRecords(final Specification<Record> specification) {
+        return recordDao.count(specification);
+    }
+
+    /**
+     * Passes searchable texts of all {@link Record}s to consumer: name, filename, targets and labels
+     * (key, value and {@literal key=value}). Texts of same {@link Record} don't come in row.
+     * Makes three queries and loads no entities.
+     *
+     * @param consumer action to perform with id of {@link Record} and each of its texts.
+     */
+    @Transactional(readOnly = true)
+    public void forEachRecordText(final BiConsumer<Long, String> consumer) {
+        try (Stream<RecordNameRow> rows = recordDao.streamNameRows()) {
+            rows.forEach(row -> {
+                consumer.accept(row.getRecordId(), row.getName());
+                consumer.accept(row.getRecordId(), row.getFileName());
+            });
+        }
+        try (Stream<RecordTargetRow> rows = recordDao.streamTargetRows()) {
+            rows.forEach(row -> consumer.accept(row.getRecordId(), row.getTarget()));
+        }
+        try (Stream<RecordLabelRow> rows = recordDao.streamLabelRows()) {
+            rows.forEach(row -> {
+                consumer.accept(row.getRecordId(), row.getKey());
+                consumer.accept(row.getRecordId(), row.getValue());
+                consumer.accept(row.getRecordId(), row.getKey() + "=" + row.getValue());
+            });
+        }
+    }
+
     /**
      * Gets Records included to given {@link File} with given filename.
      *
@@ -106,24 +192,115 @@ public class RecordService {
         return recordDao.findByFile_FileName(fileName.trim());
     }
 
+    /**
+     * Passes {@link StaticConfig}s of {@link Record.Status#ACTIVE} {@link Record}s of {@link File}
+     * with given filename to consumer one by one.
+     * <p>
+     * Instead of loading {@link Record} entities (with their targets and labels one by one),
+     * it makes exactly two queries: for targets and for labels. Both results are ordered by record id
+     * and merged while read, so memory usage doesn't grow with amount of records.
+     *
+     * @param fileName non-empty string with filename.
+     * @param consumer action to perform with each {@link StaticConfig}.
+     */
+    @Transactional(readOnly = true)
+    public void forEachActiveStaticConfigInFile(final String fileName, final Consumer<StaticConfig> consumer) {
+        forEachActiveRecordInFile(fileName, (recordId, staticConfig) -> consumer.accept(staticConfig));
+    }
+
+    /**
+     * Same as {@link #forEachActiveStaticConfigInFile}, but also passes id of {@link Record}.
+     *
+     * @param fileName non-empty string with filename.
+     * @param consumer action to perform with id of each {@link Record} and its {@link StaticConfig}.
+     */
+    @Transactional(readOnly = true)
+    public void forEachActiveRecordInFile(final String fileName, final BiConsumer<Long, StaticConfig> consumer) {
+        if (StringUtils.isBlank(fileName)) return;
+        try (Stream<RecordTargetRow> targetRows = recordDao.streamActiveTargetRows(fileName.trim());
+             Stream<RecordLabelRow> labelRows = recordDao.streamActiveLabelRows(fileName.trim())) {
+            Iterator<RecordTargetRow> targets = targetRows.iterator();
+            Iterator<RecordLabelRow> labels = labelRows.iterator();
+            RecordTargetRow targetRow = targets.hasNext() ? targets.next() : null;
+            RecordLabelRow labelRow = labels.hasNext() ? labels.next() : null;
+            while (targetRow != null) {
+                Long recordId = targetRow.getRecordId();
+                StaticConfig staticConfig = new StaticConfig();
+                while (targetRow != null && Objects.equals(targetRow.getRecordId(), recordId)) {
+                    if (targetRow.getTarget() != null) {
+                        staticConfig.getTargets().add(targetRow.getTarget());
+                    }
+                    targetRow = targets.hasNext() ? targets.next() : null;
+                }
+                //labels of records, that are not in targets query (should not happen), are skipped
+                while (labelRow != null && labelRow.getRecordId() < recordId) {
+                    labelRow = labels.hasNext() ? labels.next() : null;
+                }
+                while (labelRow != null && Objects.equals(labelRow.getRecordId(), recordId)) {
+                    staticConfig.getLabels().put(labelRow.getKey(), labelRow.getValue());
+                    labelRow = labels.hasNext() ? labels.next() : null;
+                }
+                consumer.accept(recordId, staticConfig);
+            }
+        }
+    }
+
     /**
      * Saves existing {@link Record} to database.
+     * Publishes {@link RecordChangedEvent} telling, if record was created, updated or disabled (also for record
+     * without {@link File}) and {@link FileChangedEvent} for {@link File} record bound to
+     * (and for previous one, if record moved).
      *
      * @param record non-empty {@link Record} object to update.
      * @throws IllegalArgumentException when {@link Record} is {@code null}
      */
     public void updateRecord(final Record record) {
         if (record == null) throw new IllegalArgumentException("Record cannot be null");
-        recordDao.save(record);
+        Optional<String> previousFile = record.getId() != null
+                ? recordDao.findFileNameById(record.getId()) : Optional.empty();
+        Optional<Boolean> wasActive = record.getId() != null
+                ? recordDao.findActiveById(record.getId()) : Optional.empty();
+        Record savedRecord = recordDao.save(record);
+
+        String currentFile = savedRecord.getFile() != null ? savedRecord.getFile().getFileName() : null;
+        previousFile.filter(fileName -> !fileName.equals(currentFile)).ifPresent(fileName -> {
+            publishRecordChanged(fileName, savedRecord.getId(), RecordChangedEvent.Action.UPDATED);
+            publishFileChanged(fileName);
+        });
+        RecordChangedEvent.Action action;
+        if (wasActive.isEmpty()) {
+            action = RecordChangedEvent.Action.CREATED;
+        } else if (wasActive.get() && !savedRecord.isActive()) {
+            action = RecordChangedEvent.Action.DISABLED;
+        } else {
+            action = RecordChangedEvent.Action.UPDATED;
+        }
+        publishRecordChanged(currentFile, savedRecord.getId(), action);
+        if (currentFile != null) {
+            publishFileChanged(currentFile);
+        }
     }
 
     /**
      * Delete {@link Record} from database.
+     * Publishes {@link RecordChangedEvent} and, if record was bound to {@link File}, {@link FileChangedEvent}.
      *
      * @param id non-negative id of {@link Record} to delete.
      */
     public void deleteRecord(final long id) {
         if (id < 0) throw new IllegalArgumentException("ID cannot be negative");
+        Optional<String> fileName = recordDao.findFileNameById(id);
         recordDao.deleteById(id);
+        publishRecordChanged(fileName.orElse(null), id, RecordChangedEvent.Action.DELETED);
+        fileName.ifPresent(this::publishFileChanged);
+    }
+
+    private void publishFileChanged(final String fileName) {
+        eventPublisher.publishEvent(new FileChangedEvent(fileName));
+    }
+
+    private void publishRecordChanged(final String fileName, final long recordId,
+                                      final RecordChangedEvent.Action action) {
+        eventPublisher.publishEvent(new RecordChangedEvent(fileName, recordId, action));
     }
 }
@@ -0,0 +1,314 @@
+package dev.kyberorg.httpsd.services;
+
+import dev.kyberorg.httpsd.db.models.Label;
+import dev.kyberorg.httpsd.db.models.File;
+import dev.kyberorg.httpsd.db.models.Record;
+import dev.kyberorg.httpsd.db.models.Target;
+import dev.kyberorg.httpsd.events.LabelChangedEvent;
+import dev.kyberorg.httpsd.events.RecordChangedEvent;
+import jakarta.annotation.PreDestroy;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Single read view of {@link Record}s, shared by all UI sessions.
+ * <p>
+ * {@link Row}s, pages (ids of {@link Record}s in order) and counts are kept once per application,
+ * so several open admin tabs showing same page cost one query. Only {@link Row}s are cached,
+ * not {@link Record} entities. Every change bumps version of view at once: pages and counts of previous versions
+ * are not used anymore. Changed {@link Record}s are reloaded in background, so saving doesn't wait for view,
+ * and their {@link Row}s are replaced in place. Subscribers get {@link Change} with changed
+ * {@link Row} only, not whole page.
+ * <p>
+ * Load {@link Record} with {@link RecordService#getRecordById(long)} to edit it.
+ */
+@Slf4j
+@Service
+public class RecordViewService {
+    private static final int MAX_RECORDS = 10_000;
+    private static final int MAX_PAGES = 256;
+
+    private static RecordViewService self;
+
+    private final RecordService recordService;
+    private final RecordSearchService recordSearchService;
+    private final LabelService labelService;
+
+    private final AtomicLong version = new AtomicLong();
+    private final Map<Long, Row> rows = lruMap(MAX_RECORDS);
+    private final Map<String, Versioned<List<Long>>> pages = lruMap(MAX_PAGES);
+    private final Map<String, Versioned<Long>> counts = lruMap(MAX_PAGES);
+    private final List<Consumer<Change>> subscribers = new CopyOnWriteArrayList<>();
+    /**
+     * Reloads changed {@link Record}s. Single thread: changes are applied in same order they were made.
+     */
+    private final ExecutorService reloader;
+
+    /**
+     * Provides {@link RecordViewService} to non-Spring objects.
+     *
+     * @return this {@link RecordViewService}.
+     */
+    public static RecordViewService get() {
+        return self;
+    }
+
+    /**
+     * Creates {@link RecordViewService}. Should be called by Spring itself, not intended to use directly.
+     *
+     * @param recordService service to load {@link Record}s from.
+     * @param recordSearchService service to find and count {@link Record}s.
+     * @param labelService service to find {@link Record}s with changed {@link Label}.
+     */
+    public RecordViewService(final RecordService recordService, final RecordSearchService recordSearchService,
+                             final LabelService labelService) {
+        this.recordService = recordService;
+        this.recordSearchService = recordSearchService;
+        this.labelService = labelService;
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("record-view-");
+        threadFactory.setDaemon(true);
+        this.reloader = Executors.newSingleThreadExecutor(threadFactory);
+        self = this;
+    }
+
+    /**
+     * Provides current version of view. It grows with every change of any {@link Record}.
+     *
+     * @return current version.
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * Gets one page of {@link Row}s of {@link Record}s, which text or status contains given text,
+     * see {@link RecordSearchService#findRecords}. Page is loaded from database once per version of view.
+     *
+     * @param filterText text to search for. Blank text selects all {@link Record}s.
+     * @param pageable page to load and its sort order.
+     * @return {@link List} of {@link Row}s on requested page. {@link List} is not modifiable.
+     */
+    public List<Row> findRecords(final String filterText, final Pageable pageable) {
+        long currentVersion = version.get();
+        String pageKey = filterText + "|" + pageable;
+        Versioned<List<Long>> page = pages.get(pageKey);
+        if (page != null && page.getVersion() == currentVersion) {
+            List<Row> cached = page.getValue().stream().map(rows::get).toList();
+            if (cached.stream().allMatch(Objects::nonNull)) return cached;
+        }
+        List<Record> loaded = recordSearchService.findRecords(filterText, pageable);
+        List<Long> ids = new ArrayList<>(loaded.size());
+        List<Row> shared = new ArrayList<>(loaded.size());
+        for (Record record : loaded) {
+            ids.add(record.getId());
+            //record, changed in between, is already reloaded: keep newer one
+            shared.add(rows.merge(record.getId(), Row.of(record),
+                    (current, fresh) -> version.get() == currentVersion ? fresh : current));
+        }
+        pages.put(pageKey, new Versioned<>(currentVersion, List.copyOf(ids)));
+        return Collections.unmodifiableList(shared);
+    }
+
+    /**
+     * Counts {@link Record}s, which text or status contains given text. Counted once per version of view.
+     *
+     * @param filterText text to search for. Blank text counts all {@link Record}s.
+     * @return amount of matching {@link Record}s.
+     */
+    public long countRecords(final String filterText) {
+        long currentVersion = version.get();
+        Versioned<Long> count = counts.get(filterText);
+        if (count != null && count.getVersion() == currentVersion) return count.getValue();
+        long counted = recordSearchService.countRecords(filterText);
+        counts.put(filterText, new Versioned<>(currentVersion, counted));
+        return counted;
+    }
+
+    /**
+     * Subscribes to changes of view. Subscriber is called on background thread and should return quickly.
+     *
+     * @param subscriber action to perform with every {@link Change}.
+     * @return action, that cancels subscription.
+     */
+    public Runnable subscribe(final Consumer<Change> subscriber) {
+        subscribers.add(subscriber);
+        return () -> subscribers.remove(subscriber);
+    }
+
+    /**
+     * Reloads changed {@link Record} (or forgets deleted one) in background and notifies subscribers.
+     * Runs after {@link RecordSearchService} has updated its index, so new pages are found by actual index.
+     *
+     * @param event {@link RecordChangedEvent} with changed {@link Record}.
+     */
+    @EventListener
+    public void onRecordChanged(final RecordChangedEvent event) {
+        boolean structural = event.getAction() == RecordChangedEvent.Action.CREATED
+                || event.getAction() == RecordChangedEvent.Action.DELETED;
+        reload(() -> List.of(event.getRecordId()), structural);
+    }
+
+    /**
+     * Reloads all {@link Record}s, that use changed {@link Label}, in background and notifies subscribers.
+     * All {@link Record}s are reloaded together and get same version of view.
+     *
+     * @param event {@link LabelChangedEvent} with changed {@link Label}.
+     */
+    @EventListener
+    public void onLabelChanged(final LabelChangedEvent event) {
+        reload(() -> labelService.getRecordIdsByLabelId(event.getLabelId()), false);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        reloader.shutdownNow();
+    }
+
+    /**
+     * Bumps version of view for batch of {@link Record}s at once, so pages cached before change are not served.
+     * Ids of changed {@link Record}s are found and {@link Record}s are reloaded in background with few queries
+     * (see {@link RecordService#getRecordsByIds}), then subscribers are notified about each {@link Record}.
+     */
+    private void reload(final Supplier<Collection<Long>> changedIds, final boolean structural) {
+        long newVersion = version.incrementAndGet();
+        reloader.execute(() -> reloadRows(changedIds, newVersion, structural));
+    }
+
+    private void reloadRows(final Supplier<Collection<Long>> changedIds, final long newVersion,
+                            final boolean structural) {
+        Collection<Long> recordIds;
+        try {
+            recordIds = changedIds.get();
+        } catch (RuntimeException e) {
+            log.warn("Failed to find changed records: {}", e.getMessage());
+            return;
+        }
+        Map<Long, Row> loaded = new HashMap<>();
+        try {
+            recordService.getRecordsByIds(recordIds)
+                    .forEach(record -> loaded.put(record.getId(), Row.of(record)));
+        } catch (RuntimeException e) {
+            log.warn("Failed to reload {} records: {}", recordIds.size(), e.getMessage());
+        }
+        for (Long recordId : recordIds) {
+            Row row = loaded.get(recordId);
+            if (row != null) {
+                rows.put(recordId, row);
+            } else {
+                rows.remove(recordId);
+            }
+            notifySubscribers(new Change(newVersion, recordId, row, structural || row == null));
+        }
+    }
+
+    private void notifySubscribers(final Change change) {
+        for (Consumer<Change> subscriber : subscribers) {
+            try {
+                subscriber.accept(change);
+            } catch (RuntimeException e) {
+                log.warn("Record view subscriber failed: {}", e.getMessage());
+            }
+        }
+    }
+
+    private static <K, V> Map<K, V> lruMap(final int capacity) {
+        return Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<K, V> eldest) {
+                return size() > capacity;
+            }
+        });
+    }
+
+    /**
+     * Change of view.
+     */
+    @Value
+    public static class Change {
+        /**
+         * Version of view after change.
+         */
+        long version;
+        /**
+         * Id of changed {@link Record}.
+         */
+        long recordId;
+        /**
+         * Actual {@link Row} of {@link Record} or {@code null}, if it was deleted.
+         */
+        Row row;
+        /**
+         * True, if set of {@link Record}s changed ({@link Record} created or deleted) and pages should be reloaded,
+         * false if only this {@link Record} should be redrawn.
+         */
+        boolean structural;
+    }
+
+    /**
+     * Lightweight read-only row: what records grid shows about {@link Record}. Unlike {@link Record} entity
+     * it holds only strings and can be shared between sessions and threads.
+     */
+    @Value
+    public static class Row {
+        long id;
+        /**
+         * Name to display, see {@link RecordService#getRecordName(Record)}.
+         */
+        String name;
+        /**
+         * Filename or {@code null}, if {@link Record} is not bound to any {@link File}.
+         */
+        String fileName;
+        Record.Status status;
+        /**
+         * Values of {@link Target}s in order they were created.
+         */
+        List<String> targets;
+        /**
+         * {@link Label}s as {@literal key=value} in order they were created.
+         */
+        List<String> labels;
+
+        /**
+         * Creates {@link Row} from loaded {@link Record}. {@link Record} is not referenced after.
+         *
+         * @param record non-null {@link Record} with its {@link File}, {@link Target}s and {@link Label}s.
+         * @return created {@link Row}.
+         */
+        public static Row of(final Record record) {
+            return new Row(record.getId(), RecordService.getRecordName(record),
+                    record.getFile() != null ? record.getFile().getFileName() : null,
+                    record.getStatus(),
+                    record.getTargets().stream().sorted(Comparator.comparing(Target::getId))
+                            .map(Target::getValue).toList(),
+                    record.getLabels().stream().sorted(Comparator.comparing(Label::getId))
+                            .map(Label::toString).toList());
+        }
+    }
+
+    @Value
+    private static class Versioned<T> {
+        long version;
+        T value;
+    }
+}
@@ -0,0 +1,424 @@
+package dev.kyberorg.httpsd.services;
+
+import dev.kyberorg.httpsd.db.models.File;
+import dev.kyberorg.httpsd.db.models.Record;
+import dev.kyberorg.httpsd.events.BulkChangeEvent;
+import dev.kyberorg.httpsd.events.FileChangedEvent;
+import dev.kyberorg.httpsd.events.FileRebuildEvent;
+import dev.kyberorg.httpsd.events.RecordChangedEvent;
+import dev.kyberorg.httpsd.json.StaticConfig;
+import dev.kyberorg.httpsd.registry.Registry;
+import dev.kyberorg.httpsd.registry.RegistryRecord;
+import dev.kyberorg.httpsd.registry.StringDictionary;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.UnaryOperator;
+
+/**
+ * Service, that keeps {@link Registry} - immutable in-memory copy of Service Discovery content.
+ * <p>
+ * Current {@link Registry} is published through single {@link AtomicReference}: readers just take it,
+ * without locks and database round-trips. {@link Registry} is built from database at first request
+ * and then patched on every {@link RecordChangedEvent} and {@link FileRebuildEvent}. Patch reads database
+ * holding only lock of {@link File}s it changes, so slow reload of one {@link File} doesn't delay other
+ * {@link File}s or saves. Global lock is held only to swap patched {@link Registry}.
+ * <p>
+ * Several {@link File}s (whole {@link Registry} or {@link File}s of {@link BulkChangeEvent}) are loaded
+ * from database in parallel, on {@link #LOAD_THREADS} threads.
+
+ * <p>
+ * Patch, that fails (e.g. database is unavailable), doesn't drop {@link Registry}: previous one is served,
+ * while new one is built in background, retrying every {@link #REBUILD_RETRY_DELAY}. Once built, it replaces
+ * previous one and {@link File}s, which content differs, get {@link FileChangedEvent}.
+ * <p>
+ * Strings of changed and removed records stay in {@link StringDictionary} of {@link Registry}. Rebuilt
+ * {@link Registry} gets new {@link StringDictionary}, and when patches made it grow too much
+ * ({@link Registry#needsCompaction()}), {@link Registry#compacted()} copy replaces current one in background.
+ */
+@Slf4j
+@Service
+public class RegistryService {
+    private static final Duration REBUILD_RETRY_DELAY = Duration.ofSeconds(5);
+    private static final int STRIPES = 64;
+    /**
+     * Amount of {@link File}s loaded from database at once. Kept well below size of connection pool,
+     * so requests and UI still get connections.
+     */
+    private static final int LOAD_THREADS = 4;
+
+    private static RegistryService self;
+
+    private final RecordService recordService;
+    private final FileService fileService;
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final AtomicReference<Registry> registry = new AtomicReference<>();
+    /**
+     * Guards replacing of {@link #registry}. Held only to copy and swap, never while database is read.
+     */
+    private final Object writeLock = new Object();
+    /**
+     * Per-{@link File} locks (striped by filename), held while content of {@link File} is read from database
+     * and applied. So patches of same {@link File} are applied in same order as they were read,
+     * while different {@link File}s are read concurrently.
+     */
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+
+    private final ScheduledExecutorService rebuilder;
+    private final ExecutorService loader;
+    private final AtomicBoolean rebuildScheduled = new AtomicBoolean();
+    private final AtomicBoolean compactionScheduled = new AtomicBoolean();
+    /**
+     * Incremented, when rebuilt {@link Registry} replaces current one. Guarded by {@link #writeLock}.
+     */
+    private long generation;
+    /**
+     * True while background rebuild reads database. Guarded by {@link #writeLock}.
+     */
+    private boolean rebuilding;
+    /**
+     * {@link File}s, patched while background rebuild was running. Rebuild could read them before change,
+     * so they are reloaded after rebuilt {@link Registry} is installed.
+     */
+    private final Set<String> touchedDuringRebuild = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Provides {@link RegistryService} to non-Spring objects.
+     *
+     * @return this {@link RegistryService}.
+     */
+    public static RegistryService get() {
+        return self;
+    }
+
+    /**
+     * Creates {@link RegistryService}. Should be called by Spring itself, not intended to use directly.
+     *
+     * @param recordService service to read {@link Record}s from.
+     * @param fileService service to read {@link File}s from.
+     * @param eventPublisher publisher for {@link FileChangedEvent}s of {@link File}s, changed while
+     *                       {@link Registry} was outdated.
+     */
+    public RegistryService(final RecordService recordService, final FileService fileService,
+                           final ApplicationEventPublisher eventPublisher) {
+        this.recordService = recordService;
+        this.fileService = fileService;
+        this.eventPublisher = eventPublisher;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("registry-rebuild-");
+        threadFactory.setDaemon(true);
+        this.rebuilder = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        CustomizableThreadFactory loaderThreadFactory = new CustomizableThreadFactory("registry-load-");
+        loaderThreadFactory.setDaemon(true);
+        this.loader = Executors.newFixedThreadPool(LOAD_THREADS, loaderThreadFactory);
+        self = this;
+    }
+
+    /**
+     * Provides current {@link Registry}. Builds it from database, if it is not built yet.
+     *
+     * @return current {@link Registry}.
+     * @throws org.springframework.dao.DataAccessException when {@link Registry} has to be built,
+     * but database is not available.
+     */
+    public Registry getRegistry() {
+        Registry current = registry.get();
+        if (current != null) return current;
+        synchronized (writeLock) {
+            current = registry.get();
+            if (current == null) {
+                current = build(new StringDictionary());
+                registry.set(current);
+            }
+            return current;
+        }
+    }
+
+    /**
+     * Places changed {@link Record} to {@link Registry} or removes deleted and disabled one.
+     * If {@link Record} moved to other {@link File}, both {@link File}s change at once.
+     *
+     * @param event {@link RecordChangedEvent} with changed {@link Record}.
+     */
+    @EventListener
+    public void onRecordChanged(final RecordChangedEvent event) {
+        if (registry.get() == null) return;
+        Set<String> files = new HashSet<>();
+        if (event.getFileName() != null) {
+            files.add(event.getFileName());
+        }
+        while (true) {
+            List<ReentrantLock> locks = lockFiles(files);
+            try {
+                long generation = startPatch(files);
+                Optional<Record> record = event.getAction() == RecordChangedEvent.Action.DELETED
+                        ? Optional.empty() : recordService.getRecordById(event.getRecordId());
+                boolean placed = record.isPresent() && record.get().isActive() && record.get().getFile() != null;
+                if (!placed) {
+                    applyPatch(generation, files, current -> current.withoutRecord(event.getRecordId()));
+                    return;
+                }
+                String fileName = record.get().getFile().getFileName();
+                if (files.add(fileName)) {
+                    //record is in other file: load it again, holding lock of that file too
+                    continue;
+                }
+                RegistryRecord registryRecord = RegistryRecord.of(event.getRecordId(),
+                        StaticConfig.create(record.get()), registry.get().getDictionary());
+                applyPatch(generation, files, current -> current.withRecord(fileName, registryRecord));
+                return;
+            } catch (RuntimeException e) {
+                invalidate(e);
+                return;
+            } finally {
+                unlock(locks);
+            }
+        }
+    }
+
+    /**
+     * Reloads content of changed {@link File}. Runs before other listeners, so they see updated {@link Registry}.
+     *
+     * @param event {@link FileRebuildEvent} with changed {@link File}.
+     */
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @EventListener
+    public void onFileRebuild(final FileRebuildEvent event) {
+        if (event.isRegistryUpdated()) return;
+        reloadFiles(Set.of(event.getFileName()));
+    }
+
+    /**
+     * Reloads content of changed {@link File}s. Several {@link File}s are loaded from database in parallel
+     * and replaced in {@link Registry} together.
+     *
+     * @param fileNames filenames (without extension) of changed {@link File}s.
+     */
+    public void reloadFiles(final Collection<String> fileNames) {
+        if (registry.get() == null) return;
+        List<ReentrantLock> locks = lockFiles(fileNames);
+        try {
+            long generation = startPatch(fileNames);
+            Map<String, List<RegistryRecord>> loaded = loadFiles(fileNames, registry.get().getDictionary());
+            applyPatch(generation, fileNames, current -> current.withFiles(loaded));
+        } catch (RuntimeException e) {
+            invalidate(e);
+        } finally {
+            unlock(locks);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        rebuilder.shutdownNow();
+        loader.shutdownNow();
+    }
+
+    /**
+     * Locks stripes of given {@link File}s. Stripes are always taken in same order, so two writers can't deadlock.
+     */
+    private List<ReentrantLock> lockFiles(final Collection<String> fileNames) {
+        List<ReentrantLock> locks = fileNames.stream().mapToInt(fileName -> Math.floorMod(fileName.hashCode(), STRIPES))
+                .distinct().sorted().mapToObj(stripe -> stripes[stripe]).toList();
+        locks.forEach(ReentrantLock::lock);
+        return locks;
+    }
+
+    private static void unlock(final List<ReentrantLock> locks) {
+        for (int i = locks.size() - 1; i >= 0; i--) {
+            locks.get(i).unlock();
+        }
+    }
+
+    /**
+     * Starts patch of {@link File}s, which stripes are held.
+     *
+     * @return {@link #generation} of {@link Registry}, patch will be applied to.
+     */
+    private long startPatch(final Collection<String> fileNames) {
+        synchronized (writeLock) {
+            fileNames.forEach(this::touch);
+            return generation;
+        }
+    }
+
+    /**
+     * Replaces current {@link Registry} with patched one. Patch, that was loaded before {@link Registry}
+     * was rebuilt, is dropped: rebuild started after it and read same or newer content.
+     */
+    private void applyPatch(final long startedAt, final Collection<String> fileNames,
+                            final UnaryOperator<Registry> patch) {
+        synchronized (writeLock) {
+            if (generation != startedAt) return;
+            fileNames.forEach(this::touch);
+            registry.set(patch.apply(registry.get()));
+        }
+        if (registry.get().needsCompaction() && compactionScheduled.compareAndSet(false, true)) {
+            rebuilder.execute(this::compactInBackground);
+        }
+    }
+
+    /**
+     * Replaces current {@link Registry} with {@link Registry#compacted()} copy. Copy is made without lock:
+     * if {@link Registry} was patched meanwhile, copy is dropped and next patch schedules compaction again.
+     */
+    private void compactInBackground() {
+        compactionScheduled.set(false);
+        Registry current = registry.get();
+        if (!current.needsCompaction()) return;
+        long start = System.currentTimeMillis();
+        Registry compacted = current.compacted();
+        synchronized (writeLock) {
+            if (registry.get() != current) return;
+            registry.set(compacted);
+        }
+        log.info("Registry dictionary compacted from {} to {} strings in {} ms", current.getDictionary().size(),
+                compacted.getDictionary().size(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Remembers {@link File}, patched during background rebuild. Should be called with {@link #writeLock} held.
+     */
+    private void touch(final String fileName) {
+        if (rebuilding && fileName != null) {
+            touchedDuringRebuild.add(fileName);
+        }
+    }
+
+    /**
+     * Keeps serving {@link Registry}, that cannot be patched, and schedules its rebuild in background.
+     */
+    private void invalidate(final RuntimeException cause) {
+        log.warn("Failed to update registry, previous one is served until rebuilt: {}", cause.getMessage());
+        scheduleRebuild();
+    }
+
+    private void scheduleRebuild() {
+        if (rebuildScheduled.compareAndSet(false, true)) {
+            rebuilder.schedule(this::rebuildInBackground, REBUILD_RETRY_DELAY.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void rebuildInBackground() {
+        rebuildScheduled.set(false);
+        synchronized (writeLock) {
+            touchedDuringRebuild.clear();
+            rebuilding = true;
+        }
+        Registry rebuilt;
+        try {
+            //new dictionary drops strings of removed records, changed files are found by comparing strings
+            rebuilt = build(new StringDictionary());
+        } catch (RuntimeException e) {
+            synchronized (writeLock) {
+                rebuilding = false;
+            }
+            log.warn("Failed to rebuild registry, retrying in {}: {}", REBUILD_RETRY_DELAY, e.getMessage());
+            scheduleRebuild();
+            return;
+        }
+        Set<String> changedFiles;
+        synchronized (writeLock) {
+            changedFiles = findChangedFiles(registry.get(), rebuilt);
+            //build could read these files before they were changed: they get reloaded by FileRebuildEvent
+            changedFiles.addAll(touchedDuringRebuild);
+            registry.set(rebuilt);
+            generation++;
+            rebuilding = false;
+        }
+        log.info("Registry rebuilt, {} files changed while it was outdated", changedFiles.size());
+        changedFiles.forEach(fileName -> eventPublisher.publishEvent(new FileChangedEvent(fileName)));
+    }
+
+    /**
+     * Finds {@link File}s, which records differ in given {@link Registry}s. Snapshots rendered from outdated
+     * {@link Registry} should be rendered again.
+     */
+    private static Set<String> findChangedFiles(final Registry previous, final Registry rebuilt) {
+        Set<String> fileNames = new HashSet<>(previous.getFileNames());
+        fileNames.addAll(rebuilt.getFileNames());
+        Set<String> changed = new HashSet<>();
+        for (String fileName : fileNames) {
+            List<RegistryRecord> before = previous.getRecords(fileName);
+            List<RegistryRecord> after = rebuilt.getRecords(fileName);
+            boolean same = before.size() == after.size();
+            for (int i = 0; same && i < before.size(); i++) {
+                same = before.get(i).hasSameContent(after.get(i));
+            }
+            if (!same) {
+                changed.add(fileName);
+            }
+        }
+        return changed;
+    }
+
+    private Registry build(final StringDictionary dictionary) {
+        long start = System.currentTimeMillis();
+        List<String> fileNames = fileService.getAllFiles().stream().map(File::getFileName).toList();
+        Registry built = Registry.of(loadFiles(fileNames, dictionary), dictionary);
+        log.info("Registry with {} files and {} distinct strings built in {} ms", built.getFileNames().size(),
+                dictionary.size(), System.currentTimeMillis() - start);
+        return built;
+    }
+
+    /**
+     * Loads {@link File}s in parallel on {@link #loader}. Fails, if any of them fails.
+     * Single {@link File} is loaded on calling thread.
+     */
+    private Map<String, List<RegistryRecord>> loadFiles(final Collection<String> fileNames,
+                                                        final StringDictionary dictionary) {
+        if (fileNames.size() == 1) {
+            String fileName = fileNames.iterator().next();
+            return Map.of(fileName, loadFile(fileName, dictionary));
+        }
+        Map<String, CompletableFuture<List<RegistryRecord>>> loading = new HashMap<>();
+        for (String fileName : fileNames) {
+            loading.computeIfAbsent(fileName,
+                    name -> CompletableFuture.supplyAsync(() -> loadFile(name, dictionary), loader));
+        }
+        Map<String, List<RegistryRecord>> loaded = new HashMap<>();
+        try {
+            CompletableFuture.allOf(loading.values().toArray(new CompletableFuture<?>[0])).join();
+            loading.forEach((fileName, records) -> loaded.put(fileName, records.join()));
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw e;
+        }
+        return loaded;
+    }
+
+    private List<RegistryRecord> loadFile(final String fileName, final StringDictionary dictionary) {
+        List<RegistryRecord> records = new ArrayList<>();
+        recordService.forEachActiveRecordInFile(fileName,
+                (recordId, staticConfig) -> records.add(RegistryRecord.of(recordId, staticConfig, dictionary)));
+        return records;
+    }
+}
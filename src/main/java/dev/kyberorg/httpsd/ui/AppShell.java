@@ -0,0 +1,12 @@
+package dev.kyberorg.httpsd.ui;
+
+import com.vaadin.flow.component.page.AppShellConfigurator;
+import com.vaadin.flow.component.page.Push;
+
+/**
+ * Application-wide settings of UI. Enables server push, so changes made by other sessions
+ * (see {@link UiUpdateBatcher}) reach browser without waiting for user's next action.
+ */
+@Push
+public class AppShell implements AppShellConfigurator {
+}
@@ -0,0 +1,149 @@
+package dev.kyberorg.httpsd.ui;
+
+import com.vaadin.flow.component.UI;
+import com.vaadin.flow.component.UIDetachedException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Runs slow (database) calls of UI off request thread, so session lock is not held while call runs.
+ * Result is applied to UI with {@link UI#access} and pushed to browser.
+ * <p>
+ * Each {@link AsyncCall} runs one call at a time: new call cancels unfinished previous one
+ * and result of superseded call is dropped. So rapid typing produces only result of last value.
+ * Calls, that change data, are started with {@link #runWrite} instead: they are never interrupted nor cancelled
+ * (interrupted thread could leave half-written changes), their result is always applied,
+ * and new write is rejected, while previous one runs.
+ * Optional loading indicator is switched on, when call starts, and off, when last call is done.
+ */
+@Slf4j
+public class AsyncCall {
+    private static final int THREADS = 8;
+    private static final ExecutorService EXECUTOR = createExecutor();
+
+    private final Consumer<Boolean> loadingIndicator;
+    private Future<?> current;
+    private boolean currentIsWrite;
+    private long generation;
+
+    /**
+     * Creates {@link AsyncCall} without loading indicator.
+     */
+    public AsyncCall() {
+        this(loading -> { });
+    }
+
+    /**
+     * Creates {@link AsyncCall}.
+     *
+     * @param loadingIndicator action to show ({@code true}) or hide ({@code false}) loading indicator.
+     *                         It is called with session lock held.
+     */
+    public AsyncCall(final Consumer<Boolean> loadingIndicator) {
+        this.loadingIndicator = loadingIndicator;
+    }
+
+    /**
+     * Runs call in background and applies its result to UI. Should be called from UI thread.
+     *
+     * @param call slow call to run. It must not touch UI components.
+     * @param onResult action to perform with result. It is called with session lock held.
+     * @param <T> type of result.
+     */
+    public synchronized <T> void run(final Supplier<T> call, final Consumer<T> onResult) {
+        cancelCurrent();
+        start(call, onResult, false);
+    }
+
+    /**
+     * Runs call, that changes data, in background and applies its result to UI. Should be called from UI thread.
+     * Running write is never interrupted: if previous call of this {@link AsyncCall} is still running,
+     * new one is not started.
+     *
+     * @param call slow call to run. It must not touch UI components nor objects, that UI thread uses.
+     * @param onResult action to perform with result. It is called with session lock held.
+     * @param <T> type of result.
+     * @return true if call started, false if it was rejected, because previous call still runs.
+     */
+    public synchronized <T> boolean runWrite(final Supplier<T> call, final Consumer<T> onResult) {
+        if (current != null && !current.isDone()) return false;
+        start(call, onResult, true);
+        return true;
+    }
+
+    private <T> void start(final Supplier<T> call, final Consumer<T> onResult, final boolean write) {
+        UI ui = UI.getCurrent();
+        long callGeneration = ++generation;
+        currentIsWrite = write;
+        loadingIndicator.accept(true);
+        current = EXECUTOR.submit(() -> {
+            try {
+                T result = call.get();
+                apply(ui, callGeneration, write, () -> onResult.accept(result));
+            } catch (RuntimeException e) {
+                if (Thread.currentThread().isInterrupted()) return;
+                log.error("Background call failed: {}", e.getMessage());
+                apply(ui, callGeneration, write,
+                        () -> AppUtils.showFailNotification("Operation failed, try again later"));
+            }
+        });
+    }
+
+    /**
+     * Cancels unfinished call. Its result will not be applied. Does nothing, while write call runs:
+     * it runs to its end, then its result is applied and loading indicator is switched off.
+     */
+    public synchronized void cancel() {
+        if (isWriteRunning()) return;
+        cancelCurrent();
+        loadingIndicator.accept(false);
+    }
+
+    private void cancelCurrent() {
+        if (isWriteRunning()) return;
+        if (current != null && !current.isDone()) {
+            current.cancel(true);
+        }
+        current = null;
+        generation++;
+    }
+
+    private boolean isWriteRunning() {
+        return current != null && currentIsWrite && !current.isDone();
+    }
+
+    private void apply(final UI ui, final long callGeneration, final boolean write, final Runnable action) {
+        try {
+            ui.access(() -> {
+                boolean latest;
+                synchronized (this) {
+                    latest = callGeneration == generation;
+                    //superseded read call is dropped, write call is applied anyway
+                    if (!latest && !write) return;
+                    if (latest) {
+                        current = null;
+                    }
+                }
+                //newer call will switch indicator off
+                if (latest) {
+                    loadingIndicator.accept(false);
+                }
+                action.run();
+            });
+        } catch (UIDetachedException e) {
+            //user left, nothing to update
+        }
+    }
+
+    private static ExecutorService createExecutor() {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("ui-calls-");
+        threadFactory.setDaemon(true);
+        return Executors.newFixedThreadPool(THREADS, threadFactory);
+    }
+}
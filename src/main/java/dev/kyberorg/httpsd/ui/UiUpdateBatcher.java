@@ -0,0 +1,79 @@
+package dev.kyberorg.httpsd.ui;
+
+import com.vaadin.flow.component.UI;
+import com.vaadin.flow.component.UIDetachedException;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Collects updates, coming from background threads, and applies them to {@link UI} in batches.
+ * <p>
+ * First update starts short window ({@link #WINDOW_MILLIS}), all updates within it are applied
+ * in single {@link UI#access} call, which is pushed to browser as single roundtrip.
+ * So bulk change of thousands of items doesn't cost thousands of pushes.
+ *
+ * @param <T> type of update.
+ */
+public final class UiUpdateBatcher<T> {
+    private static final long WINDOW_MILLIS = 100;
+    private static final ScheduledExecutorService SCHEDULER = createScheduler();
+
+    private final UI ui;
+    private final Consumer<List<T>> applier;
+    private final Queue<T> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    /**
+     * Creates {@link UiUpdateBatcher}.
+     *
+     * @param ui {@link UI} to apply updates to.
+     * @param applier action, that applies batch of updates. It is called with session lock held.
+     */
+    public UiUpdateBatcher(final UI ui, final Consumer<List<T>> applier) {
+        this.ui = ui;
+        this.applier = applier;
+    }
+
+    /**
+     * Queues update. Can be called from any thread.
+     *
+     * @param update update to apply.
+     */
+    public void add(final T update) {
+        pending.add(update);
+        if (scheduled.compareAndSet(false, true)) {
+            SCHEDULER.schedule(this::flush, WINDOW_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void flush() {
+        //updates added from now on start next window
+        scheduled.set(false);
+        List<T> batch = new ArrayList<>();
+        T update;
+        while ((update = pending.poll()) != null) {
+            batch.add(update);
+        }
+        if (batch.isEmpty()) return;
+        try {
+            ui.access(() -> applier.accept(batch));
+        } catch (UIDetachedException e) {
+            pending.clear();
+        }
+    }
+
+    private static ScheduledExecutorService createScheduler() {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("ui-updates-");
+        threadFactory.setDaemon(true);
+        return Executors.newSingleThreadScheduledExecutor(threadFactory);
+    }
+}
@@ -8,18 +8,23 @@ import dev.kyberorg.httpsd.db.models.Label;
 import dev.kyberorg.httpsd.db.models.LabelKey;
 import dev.kyberorg.httpsd.db.models.LabelValue;
 import dev.kyberorg.httpsd.services.LabelService;
+import dev.kyberorg.httpsd.ui.AsyncCall;
 import lombok.Getter;
+import lombok.Value;
 import org.apache.commons.lang3.StringUtils;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 /**
- * Field, that represents {@link Label}.
+ * Field, that represents {@link Label}. Keys and values are loaded in background with {@link AsyncCall}.
  */
 public class LabelField extends CustomField<Label> {
     @Getter private final ComboBox<LabelKey> keyBox = new ComboBox<>();
     @Getter private final ComboBox<LabelValue> valueBox = new ComboBox<>();
+    private final transient AsyncCall keysCall = new AsyncCall();
+    private final transient AsyncCall valuesCall = new AsyncCall();
 
     /**
      * Creates {@link LabelField}.
@@ -29,7 +34,7 @@ public class LabelField extends CustomField<Label> {
         keyBox.setPlaceholder("Choose key");
         keyBox.setItemLabelGenerator(LabelKey::getValue);
         keyBox.setHelperText("Hit enter to add");
-        keyBox.setItems(LabelService.get().getAllLabelKeys());
+        keysCall.run(() -> LabelService.get().getAllLabelKeys(), this::setKeys);
         keyBox.setAllowCustomValue(true);
         keyBox.addCustomValueSetListener(this::onNewKey);
         keyBox.addValueChangeListener(this::onKeySelected);
@@ -81,17 +86,15 @@ public class LabelField extends CustomField<Label> {
         return valid;
     }
 
+    /**
+     * Makes {@link Label} from selected key and value without database lookup:
+     * existing {@link Label} with same key and value is reused, when {@link Label} is saved.
+     */
     @Override
     protected Label generateModelValue() {
-        Label label;
-        Optional<Label> existing = LabelService.get().getLabelByKeyAndValue(keyBox.getValue(), valueBox.getValue());
-        if (existing.isPresent()) {
-            label = existing.get();
-        } else {
-            label = new Label();
-            label.setLabelKey(keyBox.getValue());
-            label.setLabelValue(valueBox.getValue());
-        }
+        Label label = new Label();
+        label.setLabelKey(keyBox.getValue());
+        label.setLabelValue(valueBox.getValue());
         return label;
     }
 
@@ -101,29 +104,43 @@ public class LabelField extends CustomField<Label> {
         valueBox.setValue(label.getLabelValue());
     }
 
+    private void setKeys(final Collection<LabelKey> keys) {
+        LabelKey selected = keyBox.getValue();
+        keyBox.setItems(keys);
+        keyBox.setValue(selected);
+    }
+
+    private void setValues(final List<LabelValue> values) {
+        LabelValue selected = valueBox.getValue();
+        valueBox.setItems(values);
+        valueBox.setValue(selected);
+    }
+
     private void onKeySelected(final ComponentValueChangeEvent<ComboBox<LabelKey>, LabelKey> e) {
         LabelKey selectedKey = e.getValue();
         valueBox.clear();
-        valueBox.setItems(LabelService.get().getLabelValuesFor(selectedKey));
+        //values of previously selected key are not needed anymore
+        valuesCall.run(() -> LabelService.get().getLabelValuesFor(selectedKey), this::setValues);
     }
 
     private void onNewKey(final ComboBoxBase.CustomValueSetEvent<ComboBox<LabelKey>> e) {
         String key = e.getDetail();
-        try {
+        keysCall.run(() -> {
             if (!LabelService.get().isLabelKeyAlreadyExist(key)) {
                 LabelService.get().createNewKey(key);
             }
-            keyBox.setItems(LabelService.get().getAllLabelKeys());
-            LabelService.get().getLabelKeyByValue(key).ifPresent(keyBox::setValue);
-        } catch (Exception ex) {
-            //TODO log it  and show error notification
-        }
+            return LabelService.get().getAllLabelKeys();
+        }, keys -> {
+            setKeys(keys);
+            keys.stream().filter(k -> k.getValue().equals(key)).findFirst().ifPresent(keyBox::setValue);
+        });
     }
 
     private void onNewValue(ComboBoxBase.CustomValueSetEvent<ComboBox<LabelValue>> e) {
         String value = e.getDetail();
-        LabelValue labelValue = null;
-        try {
+        LabelKey selectedKey = keyBox.getValue();
+        valuesCall.run(() -> {
+            LabelValue labelValue = null;
             if (!LabelService.get().isLabelValueAlreadyExist(value)) {
                 labelValue = LabelService.get().createNewValue(value);
             } else {
@@ -132,13 +149,19 @@ public class LabelField extends CustomField<Label> {
                     labelValue = existingLabelValue.get();
                 }
             }
-            List<LabelValue> values = LabelService.get().getLabelValuesFor(keyBox.getValue());
+            List<LabelValue> values = LabelService.get().getLabelValuesFor(selectedKey);
             if (labelValue != null) { values.add(labelValue); }
+            return new ValuesWithSelected(values, labelValue);
+        }, result -> {
             valueBox.clear();
-            valueBox.setItems(values);
-            if (labelValue != null) { valueBox.setValue(labelValue); }
-        } catch (Exception ex) {
-            //TODO log it  and show error notification
-        }
+            valueBox.setItems(result.getValues());
+            if (result.getSelected() != null) { valueBox.setValue(result.getSelected()); }
+        });
+    }
+
+    @Value
+    private static class ValuesWithSelected {
+        List<LabelValue> values;
+        LabelValue selected;
     }
 }
@@ -9,16 +9,20 @@ import com.vaadin.flow.component.orderedlayout.HorizontalLayout;
 import dev.kyberorg.httpsd.db.models.Target;
 import dev.kyberorg.httpsd.services.TargetService;
 import dev.kyberorg.httpsd.ui.AppUtils;
+import dev.kyberorg.httpsd.ui.AsyncCall;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.Collection;
+
 /**
- * Layout for {@link Target} ComboBox and {@link Target} delete button.
+ * Layout for {@link Target} ComboBox and {@link Target} delete button. {@link Target}s are loaded in background.
  */
 @Slf4j
 public class TargetLayout extends HorizontalLayout {
      @Getter private final ComboBox<Target> targetField = new ComboBox<>();
      @Getter private final Button deleteTargetButton = new Button(VaadinIcon.TRASH.create());
+     private final transient AsyncCall targetsCall = new AsyncCall();
 
     /**
      * Creates {@link TargetLayout}.
@@ -61,7 +65,7 @@ public class TargetLayout extends HorizontalLayout {
          targetField.setWidth("100%");
          targetField.setRequired(true);
          targetField.setPlaceholder("ex. localhost:9090");
-         targetField.setItems(TargetService.get().getAllTargets());
+         targetsCall.run(() -> TargetService.get().getAllTargets(), this::setTargets);
          targetField.setAllowCustomValue(true);
          targetField.addCustomValueSetListener(this::onNewTarget);
 
@@ -75,19 +79,33 @@ public class TargetLayout extends HorizontalLayout {
          this.setWidthFull();
      }
 
+    private void setTargets(final Collection<Target> targets) {
+        Target selected = targetField.getValue();
+        targetField.setItems(targets);
+        targetField.setValue(selected);
+    }
+
     private void onNewTarget(final ComboBoxBase.CustomValueSetEvent<ComboBox<Target>> e) {
         String newValue = e.getDetail();
-        try {
-            if (!TargetService.get().isAlreadyExists(newValue)) {
-                TargetService.get().createNewTarget(newValue);
+        targetsCall.run(() -> {
+            try {
+                if (!TargetService.get().isAlreadyExists(newValue)) {
+                    TargetService.get().createNewTarget(newValue);
+                }
+                return TargetService.get().getAllTargets();
+            } catch (Exception ex) {
+                log.error("Failed to add Target. Got exception: " + ex.getMessage());
+                return null;
             }
-            targetField.setItems(TargetService.get().getAllTargets());
-            TargetService.get().getTargetByValue(newValue).ifPresent(targetField::setValue);
+        }, targets -> {
+            if (targets == null) {
+                AppUtils.showLessImportantNotification("Failed to add new target", false);
+                return;
+            }
+            setTargets(targets);
+            targets.stream().filter(t -> t.getValue().equals(newValue)).findFirst().ifPresent(targetField::setValue);
             AppUtils.showLessImportantNotification(String.format("New Target '%s' added", newValue), true);
-        } catch (Exception ex) {
-           log.error("Failed to add Target. Got exception: " + ex.getMessage());
-            AppUtils.showLessImportantNotification("Failed to add new target", false);
-        }
+        });
     }
 
 }
@@ -1,6 +1,8 @@
 package dev.kyberorg.httpsd.ui.pages.home;
 
 
+import com.vaadin.flow.component.AttachEvent;
+import com.vaadin.flow.component.DetachEvent;
 import com.vaadin.flow.component.Key;
 import com.vaadin.flow.component.KeyModifier;
 import com.vaadin.flow.component.button.Button;
@@ -8,12 +10,17 @@ import com.vaadin.flow.component.button.ButtonVariant;
 import com.vaadin.flow.component.icon.VaadinIcon;
 import com.vaadin.flow.component.orderedlayout.HorizontalLayout;
 import com.vaadin.flow.component.orderedlayout.VerticalLayout;
+import com.vaadin.flow.component.progressbar.ProgressBar;
 import com.vaadin.flow.component.textfield.TextField;
+import com.vaadin.flow.data.value.ValueChangeMode;
 import com.vaadin.flow.router.*;
 import dev.kyberorg.httpsd.auth.AccessControl;
 import dev.kyberorg.httpsd.auth.AccessControlFactory;
 import dev.kyberorg.httpsd.db.models.Record;
+import dev.kyberorg.httpsd.services.RecordViewService;
+import dev.kyberorg.httpsd.ui.AsyncCall;
 import dev.kyberorg.httpsd.ui.MainLayout;
+import dev.kyberorg.httpsd.ui.UiUpdateBatcher;
 import dev.kyberorg.httpsd.ui.pages.login.LoginPage;
 import jakarta.annotation.PostConstruct;
 
@@ -29,6 +36,7 @@ public class HomePage extends HorizontalLayout implements BeforeEnterObserver, H
     private RecordForm form;
 
     private final RecordDataProvider dataProvider = new RecordDataProvider();
+    private Runnable viewSubscription;
 
     @PostConstruct
     public void init() {
@@ -85,14 +93,14 @@ public class HomePage extends HorizontalLayout implements BeforeEnterObserver, H
     /**
      * Selects a row
      *
-     * @param row {@link Record} bound to given row.
+     * @param record {@link Record} bound to given row.
      */
-    public void selectRow(final Record row) {
-        grid.getSelectionModel().select(row);
+    public void selectRow(final Record record) {
+        grid.getSelectionModel().select(RecordViewService.Row.of(record));
     }
 
     /**
-     * Updates a record in the records table.
+     * Updates a record in the records table. Grid is not refreshed, so it can be called from background thread.
      *
      * @param record non-empty {@link Record} to update.
      * @throws IllegalArgumentException when record if {@code null}
@@ -103,7 +111,7 @@ public class HomePage extends HorizontalLayout implements BeforeEnterObserver, H
     }
 
     /**
-     * Removes a record from records table.
+     * Removes a record from records table. Grid is not refreshed, so it can be called from background thread.
      *
      * @param record non-empty {@link Record} to update.
      * @throws IllegalArgumentException when record if {@code null}
@@ -140,12 +148,40 @@ public class HomePage extends HorizontalLayout implements BeforeEnterObserver, H
         grid.refresh();
     }
 
+    @Override
+    protected void onAttach(final AttachEvent attachEvent) {
+        super.onAttach(attachEvent);
+        //changes come from writer's thread and are pushed to browser in batches
+        UiUpdateBatcher<RecordViewService.Change> updates =
+                new UiUpdateBatcher<>(attachEvent.getUI(), dataProvider::applyChanges);
+        viewSubscription = RecordViewService.get().subscribe(updates::add);
+    }
+
+    @Override
+    protected void onDetach(final DetachEvent detachEvent) {
+        if (viewSubscription != null) {
+            viewSubscription.run();
+            viewSubscription = null;
+        }
+        super.onDetach(detachEvent);
+    }
+
     private HorizontalLayout createTopBar() {
         TextField filter = new TextField();
         filter.setPlaceholder("Filter name, targets, labels or statuses");
-        // Apply the filter to grid's data provider. TextField value is never
-        filter.addValueChangeListener(
-                event -> dataProvider.setFilter(event.getValue()));
+        filter.setValueChangeMode(ValueChangeMode.LAZY);
+        ProgressBar loading = new ProgressBar();
+        loading.setIndeterminate(true);
+        loading.setVisible(false);
+        loading.setWidth("5em");
+        // Matching page is loaded in background, then grid takes it from shared view without waiting.
+        // Newer value cancels loading of previous one.
+        AsyncCall filterCall = new AsyncCall(loading::setVisible);
+        filter.addValueChangeListener(event -> {
+            String filterText = event.getValue();
+            // Apply the filter to grid's data provider. TextField value is never null
+            filterCall.run(() -> dataProvider.prefetch(filterText), prefetched -> dataProvider.setFilter(filterText));
+        });
         // A shortcut to focus on the textField by pressing ctrl + F
         filter.addFocusShortcut(Key.KEY_F, KeyModifier.CONTROL);
 
@@ -160,8 +196,10 @@ public class HomePage extends HorizontalLayout implements BeforeEnterObserver, H
         final HorizontalLayout topLayout = new HorizontalLayout();
         topLayout.setWidth("100%");
         topLayout.add(filter);
+        topLayout.add(loading);
         topLayout.add(newRecord);
         topLayout.setVerticalComponentAlignment(Alignment.START, filter);
+        topLayout.setVerticalComponentAlignment(Alignment.CENTER, loading);
         topLayout.expand(filter);
         return topLayout;
     }
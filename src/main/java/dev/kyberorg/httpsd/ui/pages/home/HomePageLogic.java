@@ -7,7 +7,9 @@ import dev.kyberorg.httpsd.db.models.Record;
 import dev.kyberorg.httpsd.services.FileService;
 import dev.kyberorg.httpsd.services.LabelService;
 import dev.kyberorg.httpsd.services.RecordService;
+import dev.kyberorg.httpsd.services.RecordViewService;
 import dev.kyberorg.httpsd.ui.AppUtils;
+import dev.kyberorg.httpsd.ui.AsyncCall;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
@@ -25,6 +27,8 @@ import java.util.Optional;
 public class HomePageLogic implements Serializable {
     private final RecordService recordService = RecordService.get();
     @Getter private final HomePage homePage;
+    /** Loads record selected in grid. Newer selection cancels loading of previous one. */
+    private final transient AsyncCall selectCall = new AsyncCall();
 
     /**
      * Creates {@link HomePageLogic}.
@@ -44,7 +48,8 @@ public class HomePageLogic implements Serializable {
     }
 
     /**
-     * Saves new {@link Record}.
+     * Saves new {@link Record}. Doesn't touch UI, so should be called from background thread.
+     * Call {@link #recordSaved(Record)} with UI lock held after that.
      *
      * @param record record object to save.
      */
@@ -52,8 +57,16 @@ public class HomePageLogic implements Serializable {
         if (StringUtils.isBlank(record.getName())) {
             record.setName(RecordService.getRecordName(record));
         }
-        homePage.clearSelection();
         homePage.updateRecord(record);
+    }
+
+    /**
+     * Updates UI after {@link Record} was saved with {@link #saveRecord(Record)}.
+     *
+     * @param record saved record.
+     */
+    public void recordSaved(final Record record) {
+        homePage.clearSelection();
         setFragmentParameter("");
         AppUtils.showSuccessNotification(record.getName() + " created/updated");
 
@@ -61,13 +74,22 @@ public class HomePageLogic implements Serializable {
     }
 
     /**
-     * Deletes {@link Record}.
+     * Deletes {@link Record}. Doesn't touch UI, so should be called from background thread.
+     * Call {@link #recordDeleted(Record)} with UI lock held after that.
      *
      * @param record record to delete
      */
     public void deleteRecord(final Record record) {
-        homePage.clearSelection();
         homePage.removeProduct(record);
+    }
+
+    /**
+     * Updates UI after {@link Record} was deleted with {@link #deleteRecord(Record)}.
+     *
+     * @param record deleted record.
+     */
+    public void recordDeleted(final Record record) {
+        homePage.clearSelection();
         setFragmentParameter("");
         AppUtils.showSuccessNotification(record.getName() + " removed");
 
@@ -89,8 +111,14 @@ public class HomePageLogic implements Serializable {
         homePage.editRecord(new Record());
     }
 
-    public void rowSelected(final Record record) {
-        editRecord(record);
+    public void rowSelected(final RecordViewService.Row row) {
+        if (row == null) {
+            selectCall.cancel();
+            editRecord(null);
+            return;
+        }
+        //grid shows rows shared between sessions, form edits own record
+        selectCall.run(() -> findRecord(row.getId()).orElse(null), this::editRecord);
     }
 
     public Collection<File> getAllFiles() {
@@ -126,6 +154,10 @@ public class HomePageLogic implements Serializable {
     public Label saveLabel(final Label label) {
         if (label == null) throw new IllegalArgumentException("Label cannot be null");
         if (label.isNewLabel()) {
+            //same key and value already stored - reuse it
+            Optional<Label> existing = LabelService.get()
+                    .getLabelByKeyAndValue(label.getLabelKey(), label.getLabelValue());
+            if (existing.isPresent()) return existing.get();
             return LabelService.get().saveLabel(label);
         } else {
             //compare to DB record and create new one - old should be untouched
@@ -202,8 +234,7 @@ public class HomePageLogic implements Serializable {
             } else {
                 try {
                     final int recId = Integer.parseInt(recordId);
-                    final Optional<Record> record = findRecord(recId);
-                    record.ifPresent(homePage::selectRow);
+                    selectCall.run(() -> findRecord(recId), record -> record.ifPresent(homePage::selectRow));
                 } catch (final NumberFormatException e) {
                     //TODO handle
                 }
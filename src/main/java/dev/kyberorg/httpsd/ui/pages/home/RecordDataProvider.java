@@ -1,54 +1,74 @@
 package dev.kyberorg.httpsd.ui.pages.home;
 
-import com.vaadin.flow.data.provider.ListDataProvider;
-import dev.kyberorg.httpsd.db.models.Label;
+import com.vaadin.flow.data.provider.AbstractBackEndDataProvider;
+import com.vaadin.flow.data.provider.Query;
+import com.vaadin.flow.spring.data.VaadinSpringDataHelpers;
 import dev.kyberorg.httpsd.db.models.Record;
-import dev.kyberorg.httpsd.db.models.Target;
 import dev.kyberorg.httpsd.services.RecordService;
-import org.apache.commons.lang3.StringUtils;
+import dev.kyberorg.httpsd.services.RecordViewService;
+import org.springframework.data.domain.Pageable;
 
-import java.util.Collection;
-import java.util.Locale;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.stream.Stream;
 
 /**
  * Utility class that encapsulates filtering and CRUD operations for
  * {@link Record} entities.
  * <p>
+ * Grid asks for visible window only. Rows are taken from {@link RecordViewService}, which is shared
+ * by all sessions and loads each page from database once. Changes made in other sessions are applied
+ * with {@link #applyChanges}, row by row.
+ * <p>
  * Used to simplify the code in {@link HomePage} and {@link HomePageLogic}.
  */
-public class RecordDataProvider extends ListDataProvider<Record> {
+public class RecordDataProvider extends AbstractBackEndDataProvider<RecordViewService.Row, Void> {
+    /** Batches with more changes are applied as full refresh. */
+    private static final int MAX_ITEM_REFRESHES = 100;
+
     /** Text filter that can be changed separately. */
     private String filterText = "";
-
-    public RecordDataProvider() {
-        super(RecordService.get().getAllRecords());
-    }
+    /** Page, that grid requested last time. Same page is prefetched for new filter. */
+    private volatile Pageable lastPageable;
 
     /**
      * Store given record to the backing data service.
+     * Doesn't touch UI, so can be called from background thread. Grid is refreshed by caller.
      *
      * @param record the updated or new record
      */
     public void save(final Record record) {
-        final boolean newRecord = record.isNewRecord();
-
         RecordService.get().updateRecord(record);
-        if (newRecord) {
-            refreshAll();
-        } else {
-            refreshItem(record);
-        }
     }
 
     /**
      * Delete given product from the backing data service.
+     * Doesn't touch UI, so can be called from background thread. Grid is refreshed by caller.
      *
      * @param record the product to be deleted
      */
     public void delete(final Record record) {
         RecordService.get().deleteRecord(record.getId());
-        refreshAll();
+    }
+
+    /**
+     * Loads count and first page of records matching given filter into {@link RecordViewService},
+     * so following {@link #setFilter} is served without database round-trip.
+     * Doesn't touch UI, so can be called from background thread.
+     *
+     * @param filterText the text to filter by, never null
+     * @return amount of matching records.
+     */
+    public long prefetch(final String filterText) {
+        String text = filterText.trim();
+        long count = RecordViewService.get().countRecords(text);
+        Pageable pageable = lastPageable;
+        if (pageable != null) {
+            RecordViewService.get().findRecords(text, pageable.first());
+        }
+        return count;
     }
 
     /**
@@ -63,48 +83,42 @@ public class RecordDataProvider extends ListDataProvider<Record> {
         if (Objects.equals(this.filterText, filterText.trim())) {
             return;
         }
-        this.filterText = filterText.trim().toLowerCase(Locale.ENGLISH);
-
-        setFilter(record -> passesFilter(record.getName(), this.filterText)
-                || passesFilter(record.getTargets(), this.filterText)
-                || labelPassesFilter(record.getLabels(), this.filterText)
-                || passesFilter(record.getFile().getFileName(), this.filterText)
-                || passesFilter(record.getStatus().name(), this.filterText));
+        this.filterText = filterText.trim();
+        refreshAll();
     }
 
-    @Override
-    public Long getId(final Record record) {
-        Objects.requireNonNull(record, "Cannot provide an id for a null record.");
-        return record.getId();
+    /**
+     * Redraws changed records or, if records were added or removed (or too many changed at once),
+     * reloads visible window. Should be called with session lock held.
+     *
+     * @param changes batch of {@link RecordViewService.Change}s to apply, oldest first.
+     */
+    public void applyChanges(final List<RecordViewService.Change> changes) {
+        if (changes.size() > MAX_ITEM_REFRESHES || changes.stream().anyMatch(RecordViewService.Change::isStructural)) {
+            refreshAll();
+            return;
+        }
+        //only latest state of each record is drawn
+        Map<Long, RecordViewService.Row> changed = new LinkedHashMap<>();
+        changes.forEach(change -> changed.put(change.getRecordId(), change.getRow()));
+        changed.values().forEach(this::refreshItem);
     }
 
-    private boolean passesFilter(Object object, String filterText) {
-        return object != null && object.toString().toLowerCase(Locale.ENGLISH)
-                .contains(filterText);
+    @Override
+    public Long getId(final RecordViewService.Row row) {
+        Objects.requireNonNull(row, "Cannot provide an id for a null record.");
+        return row.getId();
     }
 
-    private boolean passesFilter(Collection<Target> targets, String filterText) {
-        if (StringUtils.isBlank(filterText)) return false;
-        if (targets == null || targets.isEmpty()) return false;
-        for (Target t: targets) {
-            if (t.getValue().toLowerCase(Locale.ENGLISH).contains(filterText)) return true;
-        }
-        return false;
+    @Override
+    protected Stream<RecordViewService.Row> fetchFromBackEnd(final Query<RecordViewService.Row, Void> query) {
+        Pageable pageable = VaadinSpringDataHelpers.toSpringPageRequest(query);
+        lastPageable = pageable;
+        return RecordViewService.get().findRecords(filterText, pageable).stream();
     }
 
-    private boolean labelPassesFilter(Collection<Label> labels, String filterText) {
-        if (StringUtils.isBlank(filterText)) return false;
-        if (labels == null || labels.isEmpty()) return false;
-        for (Label l: labels) {
-            boolean hasLabel = l.getLabelKey() != null;
-            if (hasLabel && l.getLabelKey().getValue().toLowerCase(Locale.ENGLISH).contains(filterText)) return true;
-            boolean hasValue = l.getLabelValue() != null;
-            if (hasValue && l.getLabelValue().getValue().toLowerCase(Locale.ENGLISH).contains(filterText)) return true;
-
-            if (hasLabel && hasValue) {
-                if (l.toString().toLowerCase(Locale.ENGLISH).contains(filterText)) return true;
-            }
-        }
-        return false;
+    @Override
+    protected int sizeInBackEnd(final Query<RecordViewService.Row, Void> query) {
+        return (int) Math.min(Integer.MAX_VALUE, RecordViewService.get().countRecords(filterText));
     }
 }
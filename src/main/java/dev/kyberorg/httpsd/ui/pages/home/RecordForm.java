@@ -24,19 +24,24 @@ import dev.kyberorg.httpsd.db.models.Record;
 import dev.kyberorg.httpsd.db.models.Target;
 import dev.kyberorg.httpsd.services.RecordService;
 import dev.kyberorg.httpsd.ui.AppUtils;
+import dev.kyberorg.httpsd.ui.AsyncCall;
 import dev.kyberorg.httpsd.ui.elements.DeleteConfirmationDialog;
 import dev.kyberorg.httpsd.ui.elements.FileComboBox;
 import dev.kyberorg.httpsd.ui.elements.LabelField;
 import dev.kyberorg.httpsd.ui.layouts.LabelLayout;
 import dev.kyberorg.httpsd.ui.layouts.TargetLayout;
+import lombok.Value;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
 
 /**
- * A form for editing a single record.
+ * A form for editing a single record. Database calls are done in background with {@link AsyncCall}.
  */
 @Slf4j
 public class RecordForm extends Div {
@@ -48,7 +53,10 @@ public class RecordForm extends Div {
     private final Button delete;
 
     private final HomePageLogic pageLogic;
-    private final Collection<File> allFiles;
+    private Collection<File> allFiles = List.of();
+    private final transient AsyncCall filesCall = new AsyncCall();
+    private final transient AsyncCall saveCall;
+    private final transient AsyncCall deleteCall;
     private final Binder<Record> binder;
     private Record currentRecord;
 
@@ -58,7 +66,6 @@ public class RecordForm extends Div {
 
     public RecordForm(final HomePageLogic pageLogic) {
         this.pageLogic = pageLogic;
-        allFiles = pageLogic.getAllFiles();
 
         setClassName("record-form");
 
@@ -82,7 +89,7 @@ public class RecordForm extends Div {
         content.add(recordName);
 
         recordFileName = new FileComboBox("Record Filename");
-        recordFileName.getComboBox().setItems(allFiles);
+        loadFiles(null);
         recordFileName.getComboBox().addCustomValueSetListener(this::onNewFileName);
         recordFileName.setWidth("100%");
         recordFileName.getComboBox().setRequired(true);
@@ -151,16 +158,21 @@ public class RecordForm extends Div {
         Button save = new Button("Save");
         save.setWidth("100%");
         save.addThemeVariants(ButtonVariant.LUMO_PRIMARY);
+        saveCall = new AsyncCall(saving -> save.setEnabled(!saving));
         save.addClickListener(event -> {
-            if (currentRecord != null
-                    && binder.writeBeanIfValid(currentRecord)
-                    && recordNameIsValue(currentRecord)
-                    && targetsAreValid(currentRecord)
-                    && labelsAreValid(currentRecord)
+            if (currentRecord == null) return;
+            //edited record may be shared by grid: form values go to own copy, which is passed to background
+            final Record draft = copyOf(currentRecord);
+            if (binder.writeBeanIfValid(draft)
+                    && recordNameIsNotBlank(draft)
+                    && targetsAreValid(draft)
+                    && labelsAreValid(draft)
             ) {
-                addTargetsToRecord(currentRecord);
-                addLabelsToRecord(currentRecord);
-                pageLogic.saveRecord(currentRecord);
+                addTargetsToRecord(draft);
+                final List<Label> labels = collectLabels();
+                if (!saveCall.runWrite(() -> storeRecord(draft, labels), result -> onRecordSaved(draft, result))) {
+                    AppUtils.showLessImportantNotification("Previous save is still in progress", false);
+                }
             }
         });
         save.addClickShortcut(Key.KEY_S, KeyModifier.CONTROL);
@@ -177,6 +189,7 @@ public class RecordForm extends Div {
         delete.setWidth("100%");
         delete.addThemeVariants(ButtonVariant.LUMO_ERROR,
                 ButtonVariant.LUMO_PRIMARY);
+        deleteCall = new AsyncCall(deleting -> delete.setEnabled(!deleting));
 
         delete.addClickListener(e ->
                 DeleteConfirmationDialog.create().setDeleteButtonAction(this::onRecordDelete).show()
@@ -186,32 +199,46 @@ public class RecordForm extends Div {
 
     }
 
+    /**
+     * Loads {@link File}s in background and puts them to filename selector.
+     *
+     * @param fileToSelect name of {@link File} to select after loading or {@code null} to keep current value.
+     */
+    private void loadFiles(final String fileToSelect) {
+        filesCall.run(pageLogic::getAllFiles, files -> {
+            ComboBox<File> comboBox = recordFileName.getComboBox();
+            File selected = comboBox.getValue();
+            allFiles = files;
+            comboBox.setItems(files);
+            if (fileToSelect != null) {
+                selected = files.stream().filter(f -> f.getFileName().equals(fileToSelect)).findFirst().orElse(null);
+            } else if (selected == null && currentRecord != null && currentRecord.isNewRecord()) {
+                //form was opened before files were loaded
+                selected = getDefaultFile();
+            }
+            comboBox.setValue(selected);
+        });
+    }
+
     private void onNewFileName(final ComboBoxBase.CustomValueSetEvent<ComboBox<File>> e) {
         String newValue = e.getDetail();
-        String err = pageLogic.newFile(newValue);
-        if (StringUtils.isBlank(err)) {
-            recordFileName.getComboBox().setItems(pageLogic.getAllFiles());
-            recordFileName.getComboBox().setValue(pageLogic.getFile(newValue));
-            AppUtils.showSuccessNotification(String.format("File '%s' added", newValue));
-        } else {
-            AppUtils.showFailNotification(err);
-        }
+        filesCall.run(() -> pageLogic.newFile(newValue), err -> {
+            if (StringUtils.isBlank(err)) {
+                loadFiles(newValue);
+                AppUtils.showSuccessNotification(String.format("File '%s' added", newValue));
+            } else {
+                AppUtils.showFailNotification(err);
+            }
+        });
     }
 
-    private boolean recordNameIsValue(final Record currentRecord) {
+    private boolean recordNameIsNotBlank(final Record currentRecord) {
         if (currentRecord == null) return false;
         if (StringUtils.isBlank(currentRecord.getName())) {
             recordName.setInvalid(true);
             recordName.setErrorMessage("Name cannot be null");
             return false;
         }
-        if (RecordService.get().isRecordWithThisNameExists(currentRecord.getName().trim())) {
-            recordName.setInvalid(true);
-            recordName.setErrorMessage("Name already exists");
-            return false;
-        }
-        recordName.setInvalid(false);
-        recordName.setErrorMessage("");
         return true;
     }
 
@@ -264,31 +291,79 @@ public class RecordForm extends Div {
 
 
 
-    public void addLabelsToRecord(final Record currentRecord) {
-        if (currentRecord == null) return;
-        //removing current ones - to keep list actual
-        currentRecord.getLabels().clear();
-
+    private List<Label> collectLabels() {
+        List<Label> labels = new ArrayList<>();
         labelFields.getChildren().forEach(component -> {
             if (component instanceof LabelLayout && component.isVisible()) {
                 LabelField labelField = ((LabelLayout) component).getLabelField();
                 Label label = labelField.toLabel();
-                try {
-                    label = pageLogic.saveLabel(label);
-                } catch (final Exception e) {
-                    AppUtils.showLessImportantNotification("Failed to save label", false);
-                }
                 if (label != null) {
-                    pageLogic.addLabelToRecord(currentRecord, label);
+                    labels.add(label);
                 }
             }
         });
+        return labels;
+    }
+
+    /**
+     * Copies fields of {@link Record}, that form edits, to new {@link Record} with same id.
+     * Collections are copied too, so changes of copy don't reach original.
+     */
+    private static Record copyOf(final Record record) {
+        Record copy = new Record();
+        copy.setId(record.getId());
+        copy.setName(record.getName());
+        copy.setFile(record.getFile());
+        copy.setActive(record.isActive());
+        copy.setTargets(new LinkedHashSet<>(record.getTargets()));
+        copy.setLabels(new LinkedHashSet<>(record.getLabels()));
+        return copy;
+    }
+
+    /**
+     * Checks name, saves {@link Label}s and {@link Record}. Runs in background: doesn't touch UI.
+     * Both {@link Record} and {@link Label}s are own copies of this call, UI thread doesn't use them meanwhile.
+     */
+    private SaveResult storeRecord(final Record record, final List<Label> labels) {
+        if (RecordService.get().isRecordWithThisNameExists(record.getName().trim())) {
+            return new SaveResult("Name already exists", false);
+        }
+        //removing current ones - to keep list actual
+        record.getLabels().clear();
+        boolean labelsFailed = false;
+        for (Label label : labels) {
+            try {
+                pageLogic.addLabelToRecord(record, pageLogic.saveLabel(label));
+            } catch (final Exception e) {
+                log.error("Failed to save label. Got exception: {}", e.getMessage());
+                labelsFailed = true;
+            }
+        }
+        pageLogic.saveRecord(record);
+        return new SaveResult(null, labelsFailed);
+    }
+
+    private void onRecordSaved(final Record record, final SaveResult result) {
+        if (result.getNameError() != null) {
+            recordName.setInvalid(true);
+            recordName.setErrorMessage(result.getNameError());
+            return;
+        }
+        recordName.setInvalid(false);
+        recordName.setErrorMessage("");
+        if (result.isLabelsFailed()) {
+            AppUtils.showLessImportantNotification("Failed to save label", false);
+        }
+        pageLogic.recordSaved(record);
+    }
+
+    private File getDefaultFile() {
+        return allFiles.stream().min(Comparator.comparing(File::getId)).orElse(null);
     }
 
     private void setDefaultsForNewRecord() {
         recordName.setValue(RecordService.getRecordName(null));
-        recordFileName.getComboBox()
-                .setValue(allFiles.stream().sorted(Comparator.comparing(File::getId)).toList().get(0));
+        recordFileName.getComboBox().setValue(getDefaultFile());
         recordStatus.setValue(Record.Status.ACTIVE);
     }
 
@@ -345,8 +420,21 @@ public class RecordForm extends Div {
 
     private void onRecordDelete() {
         if (currentRecord != null) {
-            pageLogic.deleteRecord(currentRecord);
+            final Record record = currentRecord;
+            deleteCall.runWrite(() -> {
+                pageLogic.deleteRecord(record);
+                return record;
+            }, pageLogic::recordDeleted);
         }
     }
 
+    @Value
+    private static class SaveResult {
+        /**
+         * Reason, why {@link Record} name was not accepted, or {@code null}, if {@link Record} was saved.
+         */
+        String nameError;
+        boolean labelsFailed;
+    }
+
 }
@@ -4,23 +4,17 @@ import com.vaadin.flow.component.AttachEvent;
 import com.vaadin.flow.component.UI;
 import com.vaadin.flow.component.grid.Grid;
 import com.vaadin.flow.data.renderer.LitRenderer;
-import dev.kyberorg.httpsd.db.models.Label;
-import dev.kyberorg.httpsd.db.models.Record;
-import dev.kyberorg.httpsd.db.models.Target;
-import dev.kyberorg.httpsd.services.RecordService;
+import dev.kyberorg.httpsd.services.RecordViewService;
 import org.apache.commons.lang3.StringUtils;
 
-import java.util.Comparator;
-import java.util.stream.Collectors;
-
-public class RecordGrid extends Grid<Record> {
+public class RecordGrid extends Grid<RecordViewService.Row> {
 
     public RecordGrid() {
         setSizeFull();
 
         //record name
-        addColumn(RecordService::getRecordName).setHeader("Record name")
-                .setFlexGrow(5).setSortable(true).setKey("record-name");
+        addColumn(RecordViewService.Row::getName).setHeader("Record name")
+                .setFlexGrow(5).setSortProperty("name").setKey("record-name");
 
         //targets in record, separated by commas
         addColumn(this::formatTargets).setHeader("Targets").setFlexGrow(12)
@@ -32,18 +26,17 @@ public class RecordGrid extends Grid<Record> {
 
         //file
         addColumn(this::formatFileName).setHeader("File")
-                .setSortable(true)
+                .setSortProperty("file.fileName")
                 .setFlexGrow(7).setKey("record-file");
 
         //status
         final String statusTemplate =
                 "<vaadin-icon icon=\"vaadin:circle\" style=\"color: ${item.color};\"></vaadin-icon> ${item.text}";
-        addColumn(LitRenderer.<Record>of(statusTemplate)
-                .withProperty("color", record -> record.getStatus().getColor())
-                .withProperty("text", record -> record.getStatus().getText()))
+        addColumn(LitRenderer.<RecordViewService.Row>of(statusTemplate)
+                .withProperty("color", row -> row.getStatus().getColor())
+                .withProperty("text", row -> row.getStatus().getText()))
                 .setHeader("Status")
-                .setComparator(Comparator
-                        .comparing(Record::getStatus))
+                .setSortProperty("active")
                 .setFlexGrow(5).setKey("record-status");
 
 
@@ -59,29 +52,26 @@ public class RecordGrid extends Grid<Record> {
 
     public void refresh() {
         getDataProvider().refreshAll();
-        this.setItems(RecordService.get().getAllRecords());
     }
 
-    private String formatFileName(final Record record) {
-        if (record == null || record.getFile() == null) return "Record is not included to any file";
-        if (StringUtils.isBlank(record.getFile().getFileName())) return "EMPTY.json";
-        return record.getFile().getFileName().toLowerCase() + ".json";
+    private String formatFileName(final RecordViewService.Row row) {
+        if (row == null || row.getFileName() == null) return "Record is not included to any file";
+        if (StringUtils.isBlank(row.getFileName())) return "EMPTY.json";
+        return row.getFileName().toLowerCase() + ".json";
     }
 
-    private String formatTargets(final Record record) {
-        if (record == null || record.getTargets() == null || record.getTargets().size() == 0) {
+    private String formatTargets(final RecordViewService.Row row) {
+        if (row == null || row.getTargets().isEmpty()) {
             return "No targets";
         }
-        return record.getTargets().stream().sorted(Comparator.comparing(Target::getId))
-                .map(Target::getValue).collect(Collectors.joining(", "));
+        return String.join(", ", row.getTargets());
     }
 
-    private String formatLabels(final Record record) {
-        if (record == null || record.getLabels() == null || record.getLabels().size() == 0) {
+    private String formatLabels(final RecordViewService.Row row) {
+        if (row == null || row.getLabels().isEmpty()) {
             return "No labels";
         }
-        return record.getLabels().stream().sorted(Comparator.comparing(Label::getId))
-                .map(Label::toString).collect(Collectors.joining(", "));
+        return String.join(", ", row.getLabels());
     }
 
     private void setColumnVisibility(final int width) {
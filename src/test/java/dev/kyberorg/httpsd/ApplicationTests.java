@@ -2,10 +2,21 @@ package dev.kyberorg.httpsd;
 
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.nio.file.Files;
 
 @SpringBootTest
 class ApplicationTests {
 
+	@DynamicPropertySource
+	static void storeInTempDirectory(final DynamicPropertyRegistry registry) throws IOException {
+		String storeDir = Files.createTempDirectory("http-sd-store").toString();
+		registry.add("app.sd.store.dir", () -> storeDir);
+	}
+
 	@Test
 	void contextLoads() {
 	}
@@ -0,0 +1,132 @@
+package dev.kyberorg.httpsd.json;
+
+import dev.kyberorg.httpsd.db.models.File;
+import dev.kyberorg.httpsd.db.models.Record;
+import dev.kyberorg.httpsd.db.models.Target;
+import dev.kyberorg.httpsd.json.snapshot.RenderedJson;
+import dev.kyberorg.httpsd.services.FileService;
+import dev.kyberorg.httpsd.services.RecordService;
+import dev.kyberorg.httpsd.services.TargetService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {"app.sd.rebuild.debounce=0", "app.sd.rebuild.on-start=false"})
+@AutoConfigureMockMvc
+class JsonGeneratorTests {
+    private static final String SMALL_FILE = "conditional-small";
+    private static final String BIG_FILE = "conditional-big";
+
+    @Autowired private MockMvc mockMvc;
+    @Autowired private FileService fileService;
+    @Autowired private RecordService recordService;
+    @Autowired private TargetService targetService;
+
+    @BeforeEach
+    void createFiles() {
+        createFile(SMALL_FILE, 1);
+        createFile(BIG_FILE, 50);
+    }
+
+    @Test
+    void matchingIfNoneMatchGetsNotModified() throws Exception {
+        MockHttpServletResponse first = fetch(SMALL_FILE, null);
+        String etag = first.getHeader(HttpHeaders.ETAG);
+        assertNotNull(etag);
+
+        mockMvc.perform(get("/" + SMALL_FILE + ".json").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+        mockMvc.perform(get("/" + SMALL_FILE + ".json").header(HttpHeaders.IF_NONE_MATCH, "\"other\""))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void ifModifiedSinceLastModifiedGetsNotModified() throws Exception {
+        MockHttpServletResponse first = fetch(SMALL_FILE, null);
+        String lastModified = first.getHeader(HttpHeaders.LAST_MODIFIED);
+        assertNotNull(lastModified);
+
+        mockMvc.perform(get("/" + SMALL_FILE + ".json").header(HttpHeaders.IF_MODIFIED_SINCE, lastModified))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    void gzipVariantHasOwnEtagAndVaryHeader() throws Exception {
+        MockHttpServletResponse plain = fetch(BIG_FILE, null);
+        MockHttpServletResponse gzipped = fetch(BIG_FILE, "gzip");
+
+        assertNull(plain.getHeader(HttpHeaders.CONTENT_ENCODING));
+        assertEquals("gzip", gzipped.getHeader(HttpHeaders.CONTENT_ENCODING));
+        String etag = plain.getHeader(HttpHeaders.ETAG);
+        assertNotNull(etag);
+        assertEquals(etag.substring(0, etag.length() - 1) + "-gzip\"", gzipped.getHeader(HttpHeaders.ETAG));
+        assertTrue(String.join(",", plain.getHeaders(HttpHeaders.VARY)).contains(HttpHeaders.ACCEPT_ENCODING));
+        assertTrue(String.join(",", gzipped.getHeaders(HttpHeaders.VARY)).contains(HttpHeaders.ACCEPT_ENCODING));
+
+        mockMvc.perform(get("/" + BIG_FILE + ".json")
+                        .header(HttpHeaders.ACCEPT_ENCODING, "gzip")
+                        .header(HttpHeaders.IF_NONE_MATCH, gzipped.getHeader(HttpHeaders.ETAG)))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    void gzipIsNotUsedWithZeroQuality() throws Exception {
+        assertNull(fetch(BIG_FILE, "gzip;q=0").getHeader(HttpHeaders.CONTENT_ENCODING));
+        assertNull(fetch(BIG_FILE, "*;q=0").getHeader(HttpHeaders.CONTENT_ENCODING));
+        assertNull(fetch(BIG_FILE, "gzip;q=0, *").getHeader(HttpHeaders.CONTENT_ENCODING));
+        assertNull(fetch(BIG_FILE, "br").getHeader(HttpHeaders.CONTENT_ENCODING));
+        assertEquals("gzip", fetch(BIG_FILE, "*").getHeader(HttpHeaders.CONTENT_ENCODING));
+        assertEquals("gzip", fetch(BIG_FILE, "br, gzip;q=0.5").getHeader(HttpHeaders.CONTENT_ENCODING));
+    }
+
+    @Test
+    void smallBodyIsServedWithoutGzip() throws Exception {
+        MockHttpServletResponse response = fetch(SMALL_FILE, "gzip");
+
+        assertTrue(response.getContentAsByteArray().length < RenderedJson.MIN_GZIP_SIZE);
+        assertNull(response.getHeader(HttpHeaders.CONTENT_ENCODING));
+        assertFalse(response.getHeader(HttpHeaders.ETAG).endsWith("-gzip\""));
+    }
+
+    private MockHttpServletResponse fetch(final String fileName, final String acceptEncoding) throws Exception {
+        MockHttpServletRequestBuilder request = get("/" + fileName + ".json");
+        if (acceptEncoding != null) {
+            request.header(HttpHeaders.ACCEPT_ENCODING, acceptEncoding);
+        }
+        MockHttpServletResponse response = mockMvc.perform(request).andReturn().getResponse();
+        assertEquals(200, response.getStatus());
+        return response;
+    }
+
+    private void createFile(final String fileName, final int records) {
+        if (fileService.isFileExists(fileName)) return;
+        fileService.createNew(fileName);
+        File file = fileService.getFileByName(fileName).orElseThrow();
+        for (int i = 0; i < records; i++) {
+            Record record = new Record();
+            record.setName(fileName + "-" + i);
+            record.setFile(file);
+            record.getTargets().add(createTarget(fileName + "-host-" + i + ".example.com:9100"));
+            recordService.updateRecord(record);
+        }
+    }
+
+    private Target createTarget(final String value) {
+        targetService.createNewTarget(value);
+        return targetService.getTargetByValue(value).orElseThrow();
+    }
+}
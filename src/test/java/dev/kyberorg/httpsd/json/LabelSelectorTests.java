@@ -0,0 +1,126 @@
+package dev.kyberorg.httpsd.json;
+
+import dev.kyberorg.httpsd.json.snapshot.LabelIndex;
+import dev.kyberorg.httpsd.registry.RegistryRecord;
+import dev.kyberorg.httpsd.registry.StringDictionary;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LabelSelectorTests {
+    private static final Map<String, String> PROD_DB = Map.of("env", "prod", "team", "db");
+
+    @Test
+    void operatorsAreParsed() {
+        assertTrue(LabelSelector.parse("env=prod").matches(PROD_DB));
+        assertFalse(LabelSelector.parse("env!=prod").matches(PROD_DB));
+        assertTrue(LabelSelector.parse("team=~d.*").matches(PROD_DB));
+        assertFalse(LabelSelector.parse("team!~d.*").matches(PROD_DB));
+        assertTrue(LabelSelector.parse("env = prod , team =~ db|web").matches(PROD_DB));
+    }
+
+    @Test
+    void regularExpressionsAreFullyAnchored() {
+        assertFalse(LabelSelector.parse("team=~d").matches(PROD_DB));
+        assertFalse(LabelSelector.parse("env=~ro").matches(PROD_DB));
+    }
+
+    @Test
+    void missingLabelIsEmptyValue() {
+        assertTrue(LabelSelector.parse("zone!=eu").matches(PROD_DB));
+        assertTrue(LabelSelector.parse("zone=").matches(PROD_DB));
+        assertTrue(LabelSelector.parse("zone=~.*").matches(PROD_DB));
+        assertFalse(LabelSelector.parse("zone=~.+").matches(PROD_DB));
+    }
+
+    @Test
+    void quotedValuesMayContainCommasAndOperators() {
+        Map<String, String> labels = Map.of("path", "a,b", "query", "x=y");
+        assertTrue(LabelSelector.parse("path=\"a,b\",query=\"x=y\"").matches(labels));
+        assertTrue(LabelSelector.parse("query=x=y").matches(labels));
+        assertEquals("path=\"a,b\",query=\"x=y\"", LabelSelector.parse("path=\"a,b\", query=x=y").toString());
+    }
+
+    @Test
+    void invalidSelectorsAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> LabelSelector.parse(" "));
+        assertThrows(IllegalArgumentException.class, () -> LabelSelector.parse("env"));
+        assertThrows(IllegalArgumentException.class, () -> LabelSelector.parse("1env=prod"));
+        assertThrows(IllegalArgumentException.class, () -> LabelSelector.parse("env=\"prod"));
+        assertThrows(IllegalArgumentException.class, () -> LabelSelector.parse("env=~("));
+    }
+
+    @Test
+    void longRegularExpressionsAreRejected() {
+        String limit = "a".repeat(LabelSelector.MAX_REGEX_LENGTH);
+        LabelSelector.parse("env=~" + limit);
+        assertThrows(IllegalArgumentException.class, () -> LabelSelector.parse("env=~" + limit + "a"));
+        //plain values are not limited
+        LabelSelector.parse("env=" + limit + "a");
+    }
+
+    @Test
+    void slowRegularExpressionIsStoppedAtDeadline() {
+        //every split of value between wildcards is tried: far more than second of work
+        LabelSelector selector = LabelSelector.parse("env=~" + ".*".repeat(8) + "b");
+        Map<String, String> labels = Map.of("env", "a".repeat(200));
+        Duration limit = LabelSelector.MAX_EVALUATION_TIME.multipliedBy(5);
+
+        assertTimeoutPreemptively(limit, () ->
+                assertThrows(LabelSelector.EvaluationTimeoutException.class, () -> selector.matches(labels)));
+        LabelIndex index = new LabelIndex(List.of(record(0, labels)));
+        assertTimeoutPreemptively(limit, () ->
+                assertThrows(LabelSelector.EvaluationTimeoutException.class, () -> selector.select(index)));
+    }
+
+    @Test
+    void selectIntersectsPostingListsSameWayAsMatches() {
+        List<Map<String, String>> labelSets = List.of(
+                Map.of("env", "prod", "team", "db"),
+                Map.of("env", "prod", "team", "web"),
+                Map.of("env", "dev", "team", "db"),
+                Map.of("team", "db"),
+                Map.of("env", "prod"));
+        List<RegistryRecord> records = new ArrayList<>();
+        StringDictionary dictionary = new StringDictionary();
+        for (int i = 0; i < labelSets.size(); i++) {
+            records.add(record(i, labelSets.get(i), dictionary));
+        }
+        LabelIndex index = new LabelIndex(records);
+
+        assertArrayEquals(new int[]{0}, LabelSelector.parse("env=prod,team=db").select(index));
+        assertArrayEquals(new int[]{0, 1, 4}, LabelSelector.parse("env=prod").select(index));
+        assertArrayEquals(new int[]{2, 3}, LabelSelector.parse("env!=prod,team=~d.*").select(index));
+        assertArrayEquals(new int[]{3}, LabelSelector.parse("env=").select(index));
+        assertArrayEquals(new int[0], LabelSelector.parse("env=prod,team=none").select(index));
+        for (String expression : List.of("env=prod,team!=web", "env!~p.*", "team=~db|web,env=~prod|dev")) {
+            LabelSelector selector = LabelSelector.parse(expression);
+            int[] matching = IntStream.range(0, labelSets.size())
+                    .filter(i -> selector.matches(labelSets.get(i))).toArray();
+            assertArrayEquals(matching, selector.select(index), expression);
+        }
+    }
+
+    private static RegistryRecord record(final long id, final Map<String, String> labels) {
+        return record(id, labels, new StringDictionary());
+    }
+
+    private static RegistryRecord record(final long id, final Map<String, String> labels,
+                                         final StringDictionary dictionary) {
+        StaticConfig staticConfig = new StaticConfig();
+        staticConfig.getTargets().add("host-" + id + ":9100");
+        staticConfig.setLabels(labels);
+        return RegistryRecord.of(id, staticConfig, dictionary);
+    }
+}
@@ -0,0 +1,63 @@
+package dev.kyberorg.httpsd.json;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class StaticConfigTests {
+
+    @Test
+    void configsWithSameLabelsAreMerged() {
+        List<StaticConfig> compacted = StaticConfig.compact(List.of(
+                staticConfig(Map.of("env", "prod", "team", "db"), "b:9100", "a:9100"),
+                staticConfig(Map.of("team", "db", "env", "prod"), "c:9100", "a:9100"),
+                staticConfig(Map.of("env", "dev"), "d:9100")));
+
+        assertEquals(2, compacted.size());
+        assertEquals(Map.of("env", "dev"), compacted.get(0).getLabels());
+        assertEquals(List.of("d:9100"), compacted.get(0).getTargets());
+        assertEquals(List.of("env", "team"), new ArrayList<>(compacted.get(1).getLabels().keySet()));
+        assertEquals(List.of("a:9100", "b:9100", "c:9100"), compacted.get(1).getTargets());
+    }
+
+    @Test
+    void resultDoesNotDependOnInputOrder() {
+        List<StaticConfig> staticConfigs = new ArrayList<>(List.of(
+                staticConfig(Map.of("env", "prod"), "a:9100"),
+                staticConfig(Map.of("env", "dev"), "b:9100"),
+                staticConfig(Map.of(), "c:9100"),
+                staticConfig(Map.of("env", "prod", "zone", "eu"), "d:9100"),
+                staticConfig(Map.of("env", "prod"), "e:9100")));
+        List<StaticConfig> expected = StaticConfig.compact(staticConfigs);
+
+        Collections.reverse(staticConfigs);
+
+        assertEquals(expected, StaticConfig.compact(staticConfigs));
+        assertEquals(4, expected.size());
+        assertEquals(List.of("b:9100"), expected.get(0).getTargets());
+    }
+
+    @Test
+    void inputIsNotModified() {
+        StaticConfig first = staticConfig(Map.of("env", "prod"), "b:9100");
+        StaticConfig second = staticConfig(Map.of("env", "prod"), "a:9100");
+
+        StaticConfig.compact(List.of(first, second));
+
+        assertEquals(List.of("b:9100"), first.getTargets());
+        assertEquals(List.of("a:9100"), second.getTargets());
+        assertEquals(List.of(), StaticConfig.compact(List.of()));
+    }
+
+    private static StaticConfig staticConfig(final Map<String, String> labels, final String... targets) {
+        StaticConfig staticConfig = new StaticConfig();
+        staticConfig.getTargets().addAll(List.of(targets));
+        staticConfig.getLabels().putAll(labels);
+        return staticConfig;
+    }
+}
@@ -0,0 +1,74 @@
+package dev.kyberorg.httpsd.json;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TargetShardTests {
+
+    /**
+     * Expected slices are lower 8 bytes of MD5 as unsigned integer modulo amount of slices,
+     * same as {@literal hashmod} relabel action computes. {@literal localhost:9100} has highest bit set,
+     * so signed remainder would give wrong slice.
+     */
+    @Test
+    void targetsGoToSameSlicesAsHashmod() {
+        //lower 8 bytes of MD5: edef654fccc4a4d8
+        assertSlice("foo", 1000, 696);
+        assertSlice("foo", 3, 2);
+        //lower 8 bytes of MD5: 81196e520b14af4f
+        assertSlice("localhost:9100", 1000, 751);
+        assertSlice("localhost:9100", 1024, 847);
+        //lower 8 bytes of MD5: 4cfeac4083628b3d
+        assertSlice("10.0.0.1:9100", 1000, 645);
+        //lower 8 bytes of MD5: 16a88f59c576c57e
+        assertSlice("host-1.example.com:443", 7, 5);
+    }
+
+    @Test
+    void everyTargetBelongsToExactlyOneSlice() {
+        for (int i = 0; i < 100; i++) {
+            String target = "10.0.0." + i + ":9100";
+            int slices = 0;
+            for (int index = 0; index < 3; index++) {
+                if (TargetShard.of(index, 3).contains(target)) slices++;
+            }
+            assertEquals(1, slices, target);
+        }
+    }
+
+    @Test
+    void filterKeepsLabelsAndOnlyTargetsOfSlice() {
+        StaticConfig staticConfig = new StaticConfig();
+        staticConfig.getTargets().addAll(List.of("foo", "localhost:9100", "10.0.0.1:9100"));
+        staticConfig.setLabels(Map.of("env", "prod"));
+
+        StaticConfig filtered = TargetShard.of(2, 3).filter(staticConfig);
+
+        assertEquals(List.of("foo", "10.0.0.1:9100"), filtered.getTargets());
+        assertEquals(Map.of("env", "prod"), filtered.getLabels());
+        assertNull(TargetShard.of(0, 3).filter(staticConfig));
+    }
+
+    @Test
+    void invalidSlicesAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> TargetShard.of(0, 0));
+        assertThrows(IllegalArgumentException.class, () -> TargetShard.of(3, 3));
+        assertThrows(IllegalArgumentException.class, () -> TargetShard.of(-1, 3));
+        assertThrows(IllegalArgumentException.class, () -> TargetShard.of(0, TargetShard.MAX_SHARDS + 1));
+        assertTrue(TargetShard.of(0, 1).contains("anything"));
+    }
+
+    private static void assertSlice(final String target, final int count, final int expectedIndex) {
+        for (int index = 0; index < count; index++) {
+            assertEquals(index == expectedIndex, TargetShard.of(index, count).contains(target),
+                    target + " in " + index + "/" + count);
+        }
+    }
+}
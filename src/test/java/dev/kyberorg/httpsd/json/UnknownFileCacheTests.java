@@ -0,0 +1,31 @@
+package dev.kyberorg.httpsd.json;
+
+import dev.kyberorg.httpsd.events.FileChangedEvent;
+import dev.kyberorg.httpsd.events.FileRebuildEvent;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+class UnknownFileCacheTests {
+    private static final String FILE_NAME = "created-later";
+
+    @Autowired private UnknownFileCache unknownFileCache;
+    @Autowired private ApplicationEventPublisher eventPublisher;
+
+    @Test
+    void fileRequestedBetweenChangeAndRebuildIsFoundAfterRebuild() {
+        assertTrue(unknownFileCache.isUnknown(FILE_NAME, name -> false));
+
+        //file is created, but registry gets it only with rebuild
+        eventPublisher.publishEvent(new FileChangedEvent(FILE_NAME));
+        assertTrue(unknownFileCache.isUnknown(FILE_NAME, name -> false));
+
+        eventPublisher.publishEvent(new FileRebuildEvent(FILE_NAME, false));
+        assertFalse(unknownFileCache.isUnknown(FILE_NAME, name -> true));
+    }
+}
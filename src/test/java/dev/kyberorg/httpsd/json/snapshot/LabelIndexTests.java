@@ -0,0 +1,65 @@
+package dev.kyberorg.httpsd.json.snapshot;
+
+import dev.kyberorg.httpsd.json.StaticConfig;
+import dev.kyberorg.httpsd.registry.RegistryRecord;
+import dev.kyberorg.httpsd.registry.StringDictionary;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LabelIndexTests {
+
+    @Test
+    void exactLabelHasSortedPostingList() {
+        LabelIndex index = index(
+                Map.of("env", "prod"),
+                Map.of("env", "dev"),
+                Map.of("env", "prod", "team", "db"),
+                Map.of());
+
+        assertEquals(4, index.getSize());
+        assertArrayEquals(new int[]{0, 2}, index.find("env", "prod"));
+        assertArrayEquals(new int[]{1}, index.find("env", "dev"));
+        assertArrayEquals(new int[0], index.find("env", "test"));
+        assertArrayEquals(new int[0], index.find("zone", "eu"));
+    }
+
+    @Test
+    void predicateTreatsMissingLabelAsEmptyValue() {
+        LabelIndex index = index(
+                Map.of("env", "prod"),
+                Map.of("env", "dev"),
+                Map.of("team", "db"));
+
+        assertArrayEquals(new int[]{0, 1}, index.find("env", value -> !value.isEmpty()));
+        assertArrayEquals(new int[]{1, 2}, index.find("env", value -> !value.equals("prod")));
+        assertArrayEquals(new int[]{0, 1, 2}, index.find("zone", String::isEmpty));
+        assertArrayEquals(new int[0], index.find("zone", value -> value.equals("eu")));
+    }
+
+    @Test
+    void postingListsAreIntersected() {
+        assertArrayEquals(new int[]{2, 7}, LabelIndex.intersect(new int[]{1, 2, 5, 7}, new int[]{0, 2, 3, 7, 9}));
+        assertArrayEquals(new int[0], LabelIndex.intersect(new int[]{1, 3}, new int[]{2, 4}));
+        assertArrayEquals(new int[0], LabelIndex.intersect(new int[0], new int[]{1}));
+        assertArrayEquals(new int[]{4}, LabelIndex.intersect(new int[]{4}, new int[]{4}));
+    }
+
+    @SafeVarargs
+    private static LabelIndex index(final Map<String, String>... labelSets) {
+        StringDictionary dictionary = new StringDictionary();
+        List<RegistryRecord> records = new ArrayList<>();
+        for (int i = 0; i < labelSets.length; i++) {
+            StaticConfig staticConfig = new StaticConfig();
+            staticConfig.getTargets().add("host-" + i + ":9100");
+            staticConfig.setLabels(labelSets[i]);
+            records.add(RegistryRecord.of(i, staticConfig, dictionary));
+        }
+        return new LabelIndex(records);
+    }
+}
@@ -0,0 +1,133 @@
+package dev.kyberorg.httpsd.json.snapshot;
+
+import dev.kyberorg.httpsd.App;
+import dev.kyberorg.httpsd.json.StaticConfig;
+import dev.kyberorg.httpsd.registry.RegistryRecord;
+import dev.kyberorg.httpsd.registry.StringDictionary;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LastKnownGoodStoreTests {
+    private static final String FILE_NAME = "targets";
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void storedSnapshotIsMappedBackAsIs() throws IOException {
+        FileSnapshot snapshot = snapshot(100);
+        assertTrue(snapshot.getJson().hasGzippedBody());
+        save(snapshot);
+
+        FileSnapshot loaded = newStore().load(FILE_NAME).orElseThrow();
+
+        RenderedJson json = snapshot.getJson();
+        assertEquals(snapshot.getVersion(), loaded.getVersion());
+        assertEquals(json.getHash(), loaded.getJson().getHash());
+        assertEquals(json.getEtag(), loaded.getJson().getEtag());
+        assertArrayEquals(bytes(json.getBody()), bytes(loaded.getJson().getBody()));
+        assertArrayEquals(bytes(json.getGzippedBody()), bytes(loaded.getJson().getGzippedBody()));
+        assertArrayEquals(bytes(json.getBody()), gunzip(loaded.getJson().getGzippedBody()));
+        assertEquals(1, newStore().loadAll().size());
+    }
+
+    @Test
+    void snapshotWithoutGzipCopyIsStored() {
+        FileSnapshot snapshot = snapshot(1);
+        assertFalse(snapshot.getJson().hasGzippedBody());
+        save(snapshot);
+
+        FileSnapshot loaded = newStore().load(FILE_NAME).orElseThrow();
+
+        assertFalse(loaded.getJson().hasGzippedBody());
+        assertArrayEquals(bytes(snapshot.getJson().getBody()), bytes(loaded.getJson().getBody()));
+    }
+
+    @Test
+    void truncatedFileIsNotServed() throws IOException {
+        save(snapshot(100));
+        Path stored = directory.resolve(FILE_NAME + ".snapshot");
+        try (FileChannel channel = FileChannel.open(stored, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 10);
+        }
+
+        assertEquals(Optional.empty(), newStore().load(FILE_NAME));
+        assertTrue(newStore().loadAll().isEmpty());
+    }
+
+    @Test
+    void foreignFileIsNotServed() throws IOException {
+        Files.writeString(directory.resolve(FILE_NAME + ".snapshot"), "[{\"targets\":[]}]");
+
+        assertEquals(Optional.empty(), newStore().load(FILE_NAME));
+    }
+
+    @Test
+    void filenamesOutsideOfDirectoryAreIgnored() throws IOException {
+        Path nested = Files.createDirectory(directory.resolve("nested"));
+        LastKnownGoodStore store = new LastKnownGoodStore(app(nested));
+        FileSnapshot outside = new FileSnapshot("../escaped", 1, snapshot(1).getJson());
+        store.save(outside);
+        store.shutdown();
+
+        assertFalse(Files.exists(directory.resolve("escaped.snapshot")));
+        assertEquals(Optional.empty(), store.load("../" + FILE_NAME));
+    }
+
+    private void save(final FileSnapshot snapshot) {
+        LastKnownGoodStore store = newStore();
+        store.save(snapshot);
+        //waits for background write
+        store.shutdown();
+    }
+
+    private LastKnownGoodStore newStore() {
+        return new LastKnownGoodStore(app(directory));
+    }
+
+    private static App app(final Path directory) {
+        return new App(new MockEnvironment().withProperty("app.sd.store.dir", directory.toString()));
+    }
+
+    private static FileSnapshot snapshot(final int records) {
+        StringDictionary dictionary = new StringDictionary();
+        List<RegistryRecord> registryRecords = new ArrayList<>();
+        for (int i = 0; i < records; i++) {
+            StaticConfig staticConfig = new StaticConfig();
+            staticConfig.getTargets().add("host-" + i + ".example.com:9100");
+            staticConfig.setLabels(Map.of("env", "prod", "index", String.valueOf(i)));
+            registryRecords.add(RegistryRecord.of(i, staticConfig, dictionary));
+        }
+        return FileSnapshot.render(FILE_NAME, 1_700_000_000_000L, registryRecords, null);
+    }
+
+    private static byte[] bytes(final Payload payload) {
+        byte[] bytes = new byte[payload.size()];
+        payload.asByteBuffer().get(bytes);
+        return bytes;
+    }
+
+    private static byte[] gunzip(final Payload payload) throws IOException {
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes(payload)))) {
+            return in.readAllBytes();
+        }
+    }
+}
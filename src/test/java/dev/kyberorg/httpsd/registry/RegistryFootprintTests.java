@@ -0,0 +1,84 @@
+package dev.kyberorg.httpsd.registry;
+
+import dev.kyberorg.httpsd.json.StaticConfig;
+import dev.kyberorg.httpsd.json.snapshot.FileSnapshot;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Heap footprint of what read model keeps alive per target: {@link Registry} and {@link FileSnapshot}
+ * rendered from it, compared to plain {@link StaticConfig}s (what read model held before dictionary encoding).
+ * Rendered JSON is off-heap and is not counted. Takes a while and needs about 2 GB of heap, so it runs only
+ * on request: {@literal mvn test -Dtest=RegistryFootprintTests -Dbenchmark=true}.
+ * <p>
+ * Data set: every record has 2 targets and 3 labels (env, team, dc) with few distinct values.
+ * Strings of plain model are separate objects per record, as they are after loading from database.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class RegistryFootprintTests {
+    private static final int[] TARGET_COUNTS = {10_000, 100_000, 1_000_000};
+    private static final int TARGETS_PER_RECORD = 2;
+    private static final String FILE_NAME = "benchmark";
+
+    @Test
+    void reportHeapPerTarget() {
+        System.out.printf("%10s %16s %16s %16s%n", "targets", "plain/target", "registry/target", "+snapshot/target");
+        for (int targetCount : TARGET_COUNTS) {
+            long baseline = usedHeap();
+            List<StaticConfig> plain = plainModel(targetCount);
+            long plainBytes = usedHeap() - baseline;
+
+            Registry registry = registry(plain);
+            plain = null;
+            long registryBytes = usedHeap() - baseline;
+
+            FileSnapshot snapshot = FileSnapshot.render(FILE_NAME, 1, registry.getRecords(FILE_NAME), null);
+            long snapshotBytes = usedHeap() - baseline;
+
+            System.out.printf("%10d %16d %16d %16d%n", targetCount, plainBytes / targetCount,
+                    registryBytes / targetCount, snapshotBytes / targetCount);
+            assertTrue(registryBytes < plainBytes, "registry must be smaller than plain model");
+            //keep everything reachable until measured
+            assertTrue(snapshot.getJson().getBody().size() > 0);
+        }
+    }
+
+    private static List<StaticConfig> plainModel(final int targetCount) {
+        List<StaticConfig> staticConfigs = new ArrayList<>(targetCount / TARGETS_PER_RECORD);
+        for (int target = 0; target < targetCount; target += TARGETS_PER_RECORD) {
+            StaticConfig staticConfig = new StaticConfig();
+            for (int i = target; i < target + TARGETS_PER_RECORD; i++) {
+                staticConfig.getTargets().add("10." + (i >> 16 & 255) + "." + (i >> 8 & 255) + "." + (i & 255)
+                        + ":9100");
+            }
+            staticConfig.getLabels().put(new String("env"), "env-" + target % 3);
+            staticConfig.getLabels().put(new String("team"), "team-" + target % 20);
+            staticConfig.getLabels().put(new String("dc"), "dc-" + target % 5);
+            staticConfigs.add(staticConfig);
+        }
+        return staticConfigs;
+    }
+
+    private static Registry registry(final List<StaticConfig> staticConfigs) {
+        StringDictionary dictionary = new StringDictionary();
+        List<RegistryRecord> records = new ArrayList<>(staticConfigs.size());
+        for (int i = 0; i < staticConfigs.size(); i++) {
+            records.add(RegistryRecord.of(i, staticConfigs.get(i), dictionary));
+        }
+        return Registry.of(Map.of(FILE_NAME, records), dictionary);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,111 @@
+package dev.kyberorg.httpsd.registry;
+
+import dev.kyberorg.httpsd.json.StaticConfig;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RegistryTests {
+    private final StringDictionary dictionary = new StringDictionary();
+
+    @Test
+    void newRecordIsAddedInIdOrder() {
+        Registry registry = Registry.of(Map.of("a", List.of(record(1, "a1"), record(3, "a3"))), dictionary);
+
+        Registry changed = registry.withRecord("a", record(2, "a2"));
+
+        assertEquals(List.of(1L, 2L, 3L), ids(changed, "a"));
+        assertEquals(List.of(1L, 3L), ids(registry, "a"));
+    }
+
+    @Test
+    void recordUpdatedInSameFileIsReplaced() {
+        Registry registry = Registry.of(Map.of("a", List.of(record(1, "a1"), record(2, "a2"))), dictionary);
+        RegistryRecord updated = record(2, "a2-updated");
+
+        Registry changed = registry.withRecord("a", updated);
+
+        assertEquals(List.of(1L, 2L), ids(changed, "a"));
+        assertSame(updated, changed.getRecords("a").get(1));
+        assertEquals("a2", registry.getRecords("a").get(1).toStaticConfig().getTargets().get(0));
+    }
+
+    @Test
+    void recordMovedToOtherFileLeavesPreviousFile() {
+        Registry registry = Registry.of(Map.of(
+                "a", List.of(record(1, "a1"), record(2, "a2")),
+                "b", List.of(record(3, "b3"))), dictionary);
+
+        Registry changed = registry.withRecord("b", record(2, "a2"));
+
+        assertEquals(List.of(1L), ids(changed, "a"));
+        assertEquals(List.of(2L, 3L), ids(changed, "b"));
+        //moved back: previous file is known by record id
+        Registry movedBack = changed.withRecord("a", record(2, "a2"));
+        assertEquals(List.of(1L, 2L), ids(movedBack, "a"));
+        assertEquals(List.of(3L), ids(movedBack, "b"));
+    }
+
+    @Test
+    void removedRecordLeavesItsFile() {
+        Registry registry = Registry.of(Map.of("a", List.of(record(1, "a1"), record(2, "a2"))), dictionary);
+
+        Registry changed = registry.withoutRecord(1);
+
+        assertEquals(List.of(2L), ids(changed, "a"));
+        assertTrue(changed.hasFile("a"));
+        assertSame(changed, changed.withoutRecord(1));
+        assertEquals(List.of(1L, 2L), ids(registry, "a"));
+    }
+
+    @Test
+    void reloadedFileKeepsUnchangedInstancesAndTakesMovedRecords() {
+        RegistryRecord unchanged = record(1, "a1");
+        Registry registry = Registry.of(Map.of(
+                "a", List.of(unchanged, record(2, "a2")),
+                "b", List.of(record(3, "b3"))), dictionary);
+
+        Registry changed = registry.withFiles(Map.of("a", List.of(record(3, "b3"), record(1, "a1"))));
+
+        assertEquals(List.of(1L, 3L), ids(changed, "a"));
+        assertSame(unchanged, changed.getRecords("a").get(0));
+        assertEquals(List.of(), ids(changed, "b"));
+        //record 2 is no longer in file "a": its id can be placed again without duplicate
+        assertEquals(List.of(2L), ids(changed.withRecord("c", record(2, "a2")), "c"));
+        assertFalse(registry.getRecords("b").isEmpty());
+    }
+
+    @Test
+    void compactedRegistryKeepsOnlyLiveStrings() {
+        Registry registry = Registry.of(Map.of("a", List.of(record(1, "a1"), record(2, "a2"))), dictionary);
+        for (int i = 0; i < 100; i++) {
+            registry = registry.withRecord("a", record(2, "a2-" + i));
+        }
+
+        Registry compacted = registry.compacted();
+
+        assertEquals(102, registry.getDictionary().size());
+        assertEquals(2, compacted.getDictionary().size());
+        assertEquals(List.of(1L, 2L), ids(compacted, "a"));
+        assertEquals("a2-99", compacted.getRecords("a").get(1).toStaticConfig().getTargets().get(0));
+        assertTrue(compacted.getRecords("a").get(1).hasSameContent(registry.getRecords("a").get(1)));
+        assertFalse(compacted.getRecords("a").get(1).hasSameContent(record(2, "a2-98")));
+        assertFalse(compacted.needsCompaction());
+    }
+
+    private RegistryRecord record(final long id, final String target) {
+        StaticConfig staticConfig = new StaticConfig();
+        staticConfig.getTargets().add(target);
+        return RegistryRecord.of(id, staticConfig, dictionary);
+    }
+
+    private static List<Long> ids(final Registry registry, final String fileName) {
+        return registry.getRecords(fileName).stream().map(RegistryRecord::getId).toList();
+    }
+}
@@ -0,0 +1,84 @@
+package dev.kyberorg.httpsd.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TrigramIndexTests {
+
+    @Test
+    void longQueryFindsSubstringsOnly() {
+        TrigramIndex index = index();
+
+        assertArrayEquals(new long[]{1, 2}, index.search("example"));
+        assertArrayEquals(new long[]{2}, index.search("B.EXAMPLE"));
+        assertArrayEquals(new long[]{3}, index.search("env=prod"));
+        assertArrayEquals(new long[0], index.search("prodenv"));
+        assertArrayEquals(new long[0], index.search("missing"));
+    }
+
+    @Test
+    void shortQueryMatchesAnyPositionOfText() {
+        TrigramIndex index = index();
+
+        //"z" is last char of "db-z", "-z" is its last two
+        assertArrayEquals(new long[]{4}, index.search("z"));
+        assertArrayEquals(new long[]{4}, index.search("-Z"));
+        assertArrayEquals(new long[]{1, 2}, index.search("a."));
+        assertArrayEquals(new long[]{1, 2, 3, 4}, index.search("e"));
+        assertArrayEquals(new long[0], index.search("q"));
+    }
+
+    @Test
+    void textsShorterThanTrigramAreFound() {
+        TrigramIndex index = index();
+
+        assertArrayEquals(new long[]{1, 2, 5}, index.search("x"));
+        assertArrayEquals(new long[]{5}, index.search("ab"));
+        assertArrayEquals(new long[]{2, 4, 5}, index.search("b"));
+        assertArrayEquals(new long[]{1, 2, 3, 4, 5}, index.search(""));
+    }
+
+    @Test
+    void replacedAndRemovedDocumentsAreNotFound() {
+        TrigramIndex index = index();
+        long version = index.getVersion();
+
+        index.put(1, List.of("c.test"));
+        assertTrue(index.getVersion() > version);
+        assertArrayEquals(new long[]{2}, index.search("example"));
+        assertArrayEquals(new long[]{1}, index.search("c.test"));
+
+        version = index.getVersion();
+        index.remove(5);
+        assertTrue(index.getVersion() > version);
+        assertArrayEquals(new long[0], index.search("ab"));
+        assertArrayEquals(new long[]{2}, index.search("x"));
+        assertEquals(4, index.size());
+    }
+
+    @Test
+    void documentsAddedOutOfOrderAreSorted() {
+        TrigramIndex index = new TrigramIndex();
+        for (long id : new long[]{7, 3, 9, 1, 5}) {
+            index.put(id, List.of("host-" + id));
+        }
+
+        assertArrayEquals(new long[]{1, 3, 5, 7, 9}, index.search("host"));
+        assertArrayEquals(new long[]{1, 3, 5, 7, 9}, index.search("h"));
+    }
+
+    private static TrigramIndex index() {
+        TrigramIndex index = new TrigramIndex();
+        index.put(1, List.of("a.example.com:9100"));
+        index.put(2, List.of("b.example.com:9100", "a.b"));
+        index.put(3, List.of("env", "prod", "env=prod"));
+        index.put(4, List.of("team", "db-z"));
+        index.put(5, List.of("x", "AB"));
+        return index;
+    }
+}
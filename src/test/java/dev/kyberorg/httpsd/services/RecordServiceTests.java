@@ -0,0 +1,87 @@
+package dev.kyberorg.httpsd.services;
+
+import dev.kyberorg.httpsd.db.models.File;
+import dev.kyberorg.httpsd.db.models.Label;
+import dev.kyberorg.httpsd.db.models.LabelKey;
+import dev.kyberorg.httpsd.db.models.Record;
+import dev.kyberorg.httpsd.db.models.Target;
+import dev.kyberorg.httpsd.json.StaticConfig;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class RecordServiceTests {
+    private static final String FILE_NAME = "query-count";
+
+    @Autowired private RecordService recordService;
+    @Autowired private FileService fileService;
+    @Autowired private TargetService targetService;
+    @Autowired private LabelService labelService;
+    @Autowired private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void staticConfigsOfFileAreReadWithConstantAmountOfQueries() {
+        fileService.createNew(FILE_NAME);
+        Label label = createLabel("env", "prod");
+
+        addRecords(label, 0, 5);
+        long queriesForFewRecords = countQueriesWhileReading(5);
+
+        addRecords(label, 5, 100);
+        long queriesForManyRecords = countQueriesWhileReading(100);
+
+        assertEquals(2, queriesForFewRecords);
+        assertEquals(queriesForFewRecords, queriesForManyRecords);
+    }
+
+    private long countQueriesWhileReading(final int expectedRecords) {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        List<StaticConfig> staticConfigs = new ArrayList<>();
+        recordService.forEachActiveStaticConfigInFile(FILE_NAME, staticConfigs::add);
+
+        assertEquals(expectedRecords, staticConfigs.size());
+        for (StaticConfig staticConfig : staticConfigs) {
+            assertEquals(2, staticConfig.getTargets().size());
+            assertEquals("prod", staticConfig.getLabels().get("env"));
+        }
+        return statistics.getPrepareStatementCount();
+    }
+
+    private void addRecords(final Label label, final int from, final int to) {
+        File file = fileService.getFileByName(FILE_NAME).orElseThrow();
+        for (int i = from; i < to; i++) {
+            Record record = new Record();
+            record.setName(FILE_NAME + "-" + i);
+            record.setFile(file);
+            record.getTargets().add(createTarget("host-" + i + ":9100"));
+            record.getTargets().add(createTarget("host-" + i + ":9200"));
+            record.getLabels().add(label);
+            recordService.updateRecord(record);
+        }
+    }
+
+    private Target createTarget(final String value) {
+        targetService.createNewTarget(value);
+        return targetService.getTargetByValue(value).orElseThrow();
+    }
+
+    private Label createLabel(final String key, final String value) {
+        labelService.createNewKey(key);
+        LabelKey labelKey = labelService.getLabelKeyByValue(key).orElseThrow();
+        Label label = new Label();
+        label.setLabelKey(labelKey);
+        label.setLabelValue(labelService.createNewValue(value));
+        return labelService.saveLabel(label);
+    }
+}